@@ -0,0 +1,35 @@
+import java.net.Socket;
+import java.util.Comparator;
+
+// Participants are identified by the host and port they listen on, written host:port, so that they can be spread over several machines
+// (or several loopback addresses on one). A bare port is taken to be on localhost.
+public final class Address
+{
+    // Order by host, then numerically by port, so that participants on one host keep the order their ports have always given them.
+    public static final Comparator<String> ORDER = Comparator.comparing(Address::host).thenComparingInt(Address::port);
+
+    private Address() { }
+
+    public static String of(String host, int port)
+    {
+        return host + ":" + port;
+    }
+
+    // The remote end of a connection, which for an accepted connection is not the ID of the participant on the other end.
+    public static String of(Socket socket)
+    {
+        return of(socket.getInetAddress().getHostAddress(), socket.getPort());
+    }
+
+    public static String host(String address)
+    {
+        int separator = address.lastIndexOf(':');
+
+        return separator < 0 ? "localhost" : address.substring(0, separator);
+    }
+
+    public static int port(String address)
+    {
+        return Integer.parseInt(address.substring(address.lastIndexOf(':') + 1));
+    }
+}
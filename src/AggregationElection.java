@@ -0,0 +1,246 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+// Aggregates per-option counts over a binary tree laid over the sorted participant IDs, rather than replicating every vote to
+// every participant. Partial tallies flow up to the root (the lowest port), and the final tally flows back down.
+public class AggregationElection extends Election
+{
+    private final List<String> members;
+    private final int index;
+
+    private final BlockingQueue<Tally> partialTallies = new LinkedBlockingQueue<>();
+    private final CompletableFuture<Tally> finalTally = new CompletableFuture<>();
+
+    public AggregationElection(String participant, List<String> otherParticipants, List<String> voteOptions, ParticipantLogger logger, int timeout)
+    {
+        super(participant, otherParticipants, voteOptions, logger, timeout, 2);
+
+        List<String> members = new ArrayList<>(otherParticipants);
+        members.add(participant);
+        members.sort(Address.ORDER);
+
+        this.members = members;
+        this.index = members.indexOf(participant);
+    }
+
+    @Override
+    public Outcome holdElection()
+    {
+        establishConnections(otherParticipants);
+
+        long startTime = System.currentTimeMillis();
+
+        // Round 1: wait for the partial tallies of this participant's subtree, then pass the combined tally up towards the root. Each level
+        // gets one timeout more than the level below, so a node whose child crashed still hears from the orphaned grandchildren.
+        logger.beginRound(1);
+
+        Set<String> subtree = subtree(index).stream().map(members::get).collect(Collectors.toSet());
+        subtree.remove(participant);
+
+        long upDeadline = startTime + (long) (height(index) + 1) * timeout;
+
+        try
+        {
+            while (!tally.getVoters().containsAll(subtree))
+            {
+                long remaining = upDeadline - System.currentTimeMillis();
+                Tally partial = remaining > 0 ? partialTallies.poll(remaining, TimeUnit.MILLISECONDS) : null;
+
+                if (partial == null)
+                    break;
+
+                if (tally.merge(partial))
+                    notifyIfDecided();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        if (index != 0)
+            sendUpwards();
+
+        logger.endRound(1);
+
+        // Round 2: the root's tally is final, and is passed back down the tree to everyone else.
+        logger.beginRound(2);
+
+        Tally result = tally;
+
+        if (index != 0)
+        {
+            long downDeadline = startTime + (long) (height(0) + depth(index) + 2) * timeout;
+
+            try
+            {
+                result = finalTally.get(Math.max(0, downDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+            // If the final tally never arrives, fall back to what this participant's own subtree counted.
+            catch (TimeoutException ex)
+            {
+                result = tally;
+            }
+            catch (InterruptedException | ExecutionException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        sendDownwards(children(index), result);
+
+        logger.endRound(2);
+
+        // Leave the final tally as this participant's own, for anyone asking for it after the election.
+        if (result != tally)
+        {
+            tally.clear();
+            tally.merge(result);
+        }
+
+        List<String> voters = result.getVoters();
+
+        return new Outcome(participant, decideOutcome(result.getCounts(), voters), voters);
+    }
+
+    @Override
+    protected void establishConnections(List<String> otherParticipants)
+    {
+        // Tallies are sent over short-lived connections to parent and children only, so just start accepting here.
+        acceptConnections(this::receiveTallies);
+    }
+
+    // Send to the parent, skipping past any ancestor that can no longer be reached.
+    private void sendUpwards()
+    {
+        for (int ancestor = parent(index); ancestor >= 0; ancestor = ancestor == 0 ? -1 : parent(ancestor))
+        {
+            if (sendTally(members.get(ancestor), MessageType.TALLY, tally))
+                return;
+
+            logger.participantCrashed(members.get(ancestor));
+        }
+    }
+
+    // Send to each child, and to the children of any child that can no longer be reached.
+    private void sendDownwards(List<Integer> children, Tally result)
+    {
+        for (int child : children)
+        {
+            if (!sendTally(members.get(child), MessageType.TALLY_RESULT, result))
+            {
+                logger.participantCrashed(members.get(child));
+                sendDownwards(children(child), result);
+            }
+        }
+    }
+
+    private boolean sendTally(String destination, MessageType type, Tally tally)
+    {
+        String message = tally.toMessage(type);
+
+        try
+        {
+            Socket socket = connect(destination);
+
+            if (socket == null)
+                return false;
+
+            PrintStream out = new TracingPrintStream(socket.getOutputStream());
+
+            out.println(message);
+            logger.messageSent(destination, message);
+
+            boolean sent = !out.checkError();
+            socket.close();
+
+            return sent;
+        }
+        catch (IOException ex)
+        {
+            return false;
+        }
+    }
+
+    private void receiveTallies(Socket socket)
+    {
+        MessageParser parser = new MessageParser();
+
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String message;
+
+            while ((message = LamportClock.receive(in.readLine())) != null)
+            {
+                logger.messageReceived(Address.of(socket), message);
+
+                if (message.startsWith(MessageType.TALLY_RESULT.name()))
+                    finalTally.complete(parser.parseTally(message, MessageType.TALLY_RESULT));
+                else
+                    partialTallies.add(parser.parseTally(message, MessageType.TALLY));
+            }
+        }
+        catch (IOException ignored) { }
+    }
+
+    private int parent(int node)
+    {
+        return (node - 1) / 2;
+    }
+
+    private List<Integer> children(int node)
+    {
+        List<Integer> children = new ArrayList<>();
+
+        for (int child = 2 * node + 1; child <= 2 * node + 2 && child < members.size(); child++)
+        {
+            children.add(child);
+        }
+
+        return children;
+    }
+
+    private List<Integer> subtree(int node)
+    {
+        List<Integer> subtree = new ArrayList<>();
+        subtree.add(node);
+
+        for (int child : children(node))
+        {
+            subtree.addAll(subtree(child));
+        }
+
+        return subtree;
+    }
+
+    private int height(int node)
+    {
+        int height = 0;
+
+        for (int child : children(node))
+        {
+            height = Math.max(height, height(child) + 1);
+        }
+
+        return height;
+    }
+
+    private int depth(int node)
+    {
+        int depth = 0;
+
+        for (; node > 0; node = parent(node))
+        {
+            depth++;
+        }
+
+        return depth;
+    }
+}
@@ -0,0 +1,28 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+// Exponential backoff with full jitter between reconnection attempts, so that many processes retrying against the same listener
+// spread out instead of arriving in synchronised waves.
+public class Backoff
+{
+    private final long maximumDelay;
+    private long delay;
+
+    public Backoff(long initialDelay, long maximumDelay)
+    {
+        this.delay = Math.max(1, initialDelay);
+        this.maximumDelay = Math.max(this.delay, maximumDelay);
+    }
+
+    public long nextDelay()
+    {
+        long jitteredDelay = ThreadLocalRandom.current().nextLong(delay + 1);
+        delay = Math.min(maximumDelay, delay * 2);
+
+        return Math.max(1, jitteredDelay);
+    }
+
+    public void sleep() throws InterruptedException
+    {
+        Thread.sleep(nextDelay());
+    }
+}
@@ -0,0 +1,320 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// The raw ballots held by a participant standing for a polling station, one vote per line of a local file (A, or A|X with several
+// questions). The file is memory-mapped and counted once, in chunks in parallel on the common fork/join pool, so that millions of
+// ballots are neither read onto the heap nor counted on one thread. The participant then votes with the counts alone, written
+// A=1200,B=300, which decideOutcome weighs in place of counting the votes one each.
+//
+// Usage: BallotBox <file> [<ballots> <options...>]
+// writes that many random ballots over the options first, if given, then counts the file.
+public class BallotBox
+{
+    private static final int CHUNK_SIZE = 1 << 22;
+
+    private static final Map<Path, BallotBox> ballotBoxes = new HashMap<>();
+
+    // The distinct ballots and how many times each was cast.
+    private final Map<String, Long> counts;
+
+    private BallotBox(Map<String, Long> counts)
+    {
+        this.counts = counts;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path path = Paths.get(args[0]);
+
+        if (args.length > 2)
+            write(path, Long.parseLong(args[1]), Arrays.asList(args).subList(2, args.length));
+
+        long startTime = System.nanoTime();
+        BallotBox ballotBox = load(path);
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+
+        ballotBox.counts.forEach((ballot, count) -> System.out.println(ballot + " " + count));
+        System.out.println(String.format("counted %d ballots in %.3f s", ballotBox.getBallotCount(), elapsed));
+    }
+
+    // The ballots of the given participant, from ballots_<host>_<port>.txt in the ballot directory, or null if it has none and so
+    // votes for itself. Each file is only counted once, however many elections it is used for.
+    public static synchronized BallotBox forParticipant(String participant)
+    {
+        String directory = Settings.getBallotDirectory();
+
+        if (directory == null)
+            return null;
+
+        Path path = Paths.get(directory, "ballots_" + participant.replace(':', '_') + ".txt");
+
+        if (!Files.isRegularFile(path))
+            return null;
+
+        if (!ballotBoxes.containsKey(path))
+        {
+            try
+            {
+                ballotBoxes.put(path, load(path));
+            }
+            catch (IOException ex)
+            {
+                ex.printStackTrace();
+                ballotBoxes.put(path, null);
+            }
+        }
+
+        return ballotBoxes.get(path);
+    }
+
+    public static BallotBox load(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            Counts counts = ForkJoinPool.commonPool().invoke(new CountTask(channel, 0, channel.size()));
+
+            return new BallotBox(counts.toMap());
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+    }
+
+    private static void write(Path path, long ballots, List<String> options) throws IOException
+    {
+        List<List<String>> questions = Questions.split(options);
+        Random random = new Random();
+
+        try (BufferedWriter out = Files.newBufferedWriter(path))
+        {
+            for (long i = 0; i < ballots; i++)
+            {
+                List<String> choices = new ArrayList<>();
+
+                for (List<String> question : questions)
+                {
+                    choices.add(question.get(random.nextInt(question.size())));
+                }
+
+                out.write(Questions.join(choices));
+                out.newLine();
+            }
+        }
+    }
+
+    public long getBallotCount()
+    {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    // The counts of the ballots that are valid for these options, as this station's vote. A ballot that does not make one of the given
+    // choices for every question is spoilt, and left out. A station with no valid ballots votes for the first options with no weight.
+    public String getVote(List<String> voteOptions)
+    {
+        List<List<String>> questions = Questions.split(voteOptions);
+        StringBuilder vote = new StringBuilder();
+
+        for (Map.Entry<String, Long> count : counts.entrySet())
+        {
+            if (!isValid(count.getKey(), questions))
+                continue;
+
+            if (vote.length() > 0)
+                vote.append(",");
+
+            vote.append(count.getKey()).append("=").append(count.getValue());
+        }
+
+        if (vote.length() == 0)
+        {
+            List<String> choices = new ArrayList<>();
+            questions.forEach(question -> choices.add(question.isEmpty() ? "" : question.get(0)));
+
+            vote.append(Questions.join(choices)).append("=0");
+        }
+
+        return vote.toString();
+    }
+
+    private static boolean isValid(String ballot, List<List<String>> questions)
+    {
+        List<String> choices = Questions.getChoices(ballot);
+
+        if (choices.size() != questions.size())
+            return false;
+
+        for (int question = 0; question < choices.size(); question++)
+        {
+            if (!questions.get(question).contains(choices.get(question)))
+                return false;
+        }
+
+        return true;
+    }
+
+    public static boolean isWeighted(String vote)
+    {
+        return vote.contains("=");
+    }
+
+    // Counts of whole votes with the weighted votes of polling stations replaced by the counts they carry, so that a station's ballots
+    // count for as much as the same number of participants voting alike.
+    public static Map<String, Long> weigh(Map<String, Long> counts)
+    {
+        Map<String, Long> weighedCounts = new TreeMap<>();
+
+        for (Map.Entry<String, Long> count : counts.entrySet())
+        {
+            if (!isWeighted(count.getKey()))
+            {
+                weighedCounts.merge(count.getKey(), count.getValue(), Long::sum);
+                continue;
+            }
+
+            for (String weight : count.getKey().split(","))
+            {
+                int separator = weight.lastIndexOf('=');
+
+                weighedCounts.merge(weight.substring(0, separator), count.getValue() * Long.parseLong(weight.substring(separator + 1)), Long::sum);
+            }
+        }
+
+        return weighedCounts;
+    }
+
+    // Counts the lines that start in [start, end) of the file, splitting the range in half until it is no more than a chunk. The split
+    // is by offset alone: a chunk finishes the line it ends in, and skips the one it starts in unless that line starts exactly there.
+    private static class CountTask extends RecursiveTask<Counts>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        public CountTask(FileChannel channel, long start, long end)
+        {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Counts compute()
+        {
+            if (end - start > CHUNK_SIZE)
+            {
+                long middle = start + (end - start) / 2;
+
+                CountTask first = new CountTask(channel, start, middle);
+                CountTask second = new CountTask(channel, middle, end);
+
+                first.fork();
+                Counts counts = second.compute();
+                counts.merge(first.join());
+
+                return counts;
+            }
+
+            try
+            {
+                return count();
+            }
+            catch (IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private Counts count() throws IOException
+        {
+            Counts counts = new Counts();
+
+            // Map from the byte before the chunk, to tell whether it starts a line, to as far as its last line could run.
+            long regionStart = Math.max(0, start - 1);
+            long regionLength = Math.min(channel.size() - regionStart, Integer.MAX_VALUE);
+
+            if (regionLength <= 0)
+                return counts;
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionLength);
+
+            int position = (int) (start - regionStart);
+            int chunkEnd = (int) Math.min(end - regionStart, regionLength);
+
+            if (start > 0 && buffer.get(0) != '\n')
+            {
+                while (position < regionLength && buffer.get(position) != '\n') { position++; }
+                position++;
+            }
+
+            byte[] line = new byte[256];
+
+            while (position < chunkEnd)
+            {
+                int length = 0;
+
+                while (position < regionLength && buffer.get(position) != '\n')
+                {
+                    if (length == line.length)
+                        line = Arrays.copyOf(line, 2 * length);
+
+                    line[length++] = buffer.get(position++);
+                }
+
+                position++;
+
+                String ballot = new String(line, 0, length, StandardCharsets.UTF_8).trim();
+
+                if (!ballot.isEmpty())
+                    counts.add(ballot, 1);
+            }
+
+            return counts;
+        }
+    }
+
+    // The count of each distinct ballot, kept in a primitive array indexed by the order the ballots were first seen in, so that
+    // counting one does not box a new Long.
+    private static class Counts
+    {
+        private final Map<String, Integer> index = new HashMap<>();
+        private long[] counts = new long[16];
+
+        public void add(String ballot, long count)
+        {
+            Integer position = index.get(ballot);
+
+            if (position == null)
+            {
+                position = index.size();
+                index.put(ballot, position);
+
+                if (position == counts.length)
+                    counts = Arrays.copyOf(counts, 2 * position);
+            }
+
+            counts[position] += count;
+        }
+
+        public void merge(Counts other)
+        {
+            other.index.forEach((ballot, position) -> add(ballot, other.counts[position]));
+        }
+
+        public Map<String, Long> toMap()
+        {
+            Map<String, Long> map = new TreeMap<>();
+            index.forEach((ballot, position) -> map.put(ballot, counts[position]));
+
+            return map;
+        }
+    }
+}
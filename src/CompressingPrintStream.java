@@ -0,0 +1,21 @@
+import java.io.OutputStream;
+
+// A PrintStream whose lines go through a MessageCodec, so that a compressed connection can stand in wherever a plain one is used. Any
+// trace stamp goes in front of the compressed line, so that it can be taken off before inflating.
+public class CompressingPrintStream extends TracingPrintStream
+{
+    private final MessageCodec codec;
+
+    public CompressingPrintStream(OutputStream out, MessageCodec codec)
+    {
+        super(out);
+        this.codec = codec;
+    }
+
+    // Encoding and writing happen together, so that lines reach the other end in the order the deflater saw them.
+    @Override
+    public synchronized void println(String message)
+    {
+        super.println(codec.encode(message));
+    }
+}
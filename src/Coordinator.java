@@ -2,6 +2,8 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Coordinator
@@ -10,11 +12,33 @@ public class Coordinator
     private final int loggerPort;
     private final int numberOfParticipants;
     private final int timeout;
+    private final int numberOfElections;
     private final List<String> options;
 
     private final ServerSocket serverSocket;
-    private final Map<Integer, Socket> participants = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, Socket> participants = Collections.synchronizedMap(new HashMap<>());
     private final List<ParticipantThread> threads = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch joinBarrier;
+    private volatile long scheduleEpoch;
+
+    // With write-ahead logs, a participant that drops out mid-election may restart, JOIN again and still report its outcome.
+    private final boolean acceptRejoins;
+    private final Map<String, CountDownLatch> crashedVoters = Collections.synchronizedMap(new HashMap<>());
+    private volatile CountDownLatch currentOutcomeBarrier;
+
+    // The outcomes of every election so far, as reported, which tooling can be told about or ask for rather than scraping the logs.
+    private final List<ElectionResult> results = Collections.synchronizedList(new ArrayList<>());
+    private volatile ElectionResult currentResult;
+    private Consumer<ElectionResult> resultListener;
+
+    // Every option set sent so far, by hash, as the VOTE_OPTIONS that sends it in full.
+    private final Map<String, String> publishedOptionSets = Collections.synchronizedMap(new HashMap<>());
+
+    // A sub-coordinator runs the election for its own shard of the participants, and forwards the shard's tally to the root.
+    private final String parentAddress;
+    private Socket parentSocket;
+    private PrintStream parentOut;
+    private final Map<String, Tally> shardTallies = Collections.synchronizedMap(new HashMap<>());
 
     private final CoordinatorLogger logger;
 
@@ -24,7 +48,12 @@ public class Coordinator
         this.loggerPort = loggerPort;
         this.numberOfParticipants = numberOfParticipants;
         this.timeout = timeout;
+        Questions.checkOptions(options);
         this.options = options;
+        this.numberOfElections = Settings.getNumberOfElections();
+        this.joinBarrier = new CountDownLatch(numberOfParticipants);
+        this.acceptRejoins = Settings.isWriteAheadLogEnabled();
+        this.parentAddress = Settings.getCoordinatorParent();
 
         CoordinatorLogger tempLogger;
 
@@ -57,42 +86,400 @@ public class Coordinator
         coordinator.run();
     }
 
+    // Have the listener told about every election as soon as a quorum of its participants agree on the outcome.
+    public synchronized void onResult(Consumer<ElectionResult> listener)
+    {
+        this.resultListener = listener;
+    }
+
+    public List<ElectionResult> getResults()
+    {
+        synchronized (results)
+        {
+            return new ArrayList<>(results);
+        }
+    }
+
     public void run()
     {
-        for (int i = 0; i < numberOfParticipants; i++)
+        if (parentAddress != null && !joinRoot())
+            return;
+
+        if (Settings.getResultQueryPort() > 0)
+            serveResults(Settings.getResultQueryPort());
+
+        // Accept on several threads at once, so that a storm of participants starting together is drained from the backlog quickly.
+        int acceptThreads = Math.max(1, Settings.getCoordinatorAcceptThreads());
+        ExecutorService acceptService = Executors.newFixedThreadPool(acceptThreads);
+        AtomicInteger remainingConnections = new AtomicInteger(numberOfParticipants);
+
+        // When holding a series of elections, keep accepting after the first N, so that late participants join the next election (and
+        // likewise for restarted participants rejoining).
+        Runnable acceptParticipants = () -> {
+            while (remainingConnections.getAndDecrement() > 0 || ((numberOfElections > 1 || acceptRejoins) && !serverSocket.isClosed()))
+            {
+                try
+                {
+                    Socket socket = serverSocket.accept();
+                    logger.connectionAccepted(Address.of(socket));
+
+                    ParticipantThread thread = new ParticipantThread(socket);
+                    threads.add(thread);
+                    thread.start();
+                }
+                catch (IOException ex)
+                {
+                    if (serverSocket.isClosed())
+                        return;
+
+                    ex.printStackTrace();
+                    joinBarrier.countDown();
+                }
+            }
+        };
+
+        for (int i = 0; i < acceptThreads; i++)
+        {
+            acceptService.execute(acceptParticipants);
+        }
+
+        acceptService.shutdown();
+
+        // Send the DETAILS and VOTE_OPTIONS the moment every participant has either registered its JOIN or timed out doing so.
+        try
+        {
+            joinBarrier.await();
+        }
+        catch (InterruptedException ex)
         {
+            ex.printStackTrace();
+            return;
+        }
+
+        for (int election = 1; election <= numberOfElections; election++)
+        {
+            List<ParticipantThread> connected;
+
+            // Copied first, as a participant registering takes the participants lock before this one.
+            synchronized (threads)
+            {
+                connected = new ArrayList<>(threads);
+            }
+
+            List<ParticipantThread> electorate = connected.stream().filter(ParticipantThread::hasJoined).collect(Collectors.toList());
+
+            CountDownLatch outcomeBarrier = new CountDownLatch(electorate.size());
+            currentOutcomeBarrier = outcomeBarrier;
+            crashedVoters.clear();
+            shardTallies.clear();
+
+            ElectionResult result = new ElectionResult(election, electorate.size(), Settings.getOutcomeQuorum(electorate.size()));
+            result.onComplete(this::electionCompleted);
+            results.add(result);
+            currentResult = result;
+
+            electorate.forEach(e -> e.awaitOutcome(outcomeBarrier));
+            startElection(electorate);
+
+            // Every participant gets the same absolute start time and round length, so that their rounds line up.
+            if (Settings.isScheduleEnabled())
+            {
+                scheduleEpoch = System.currentTimeMillis() + Settings.getScheduleLead(timeout);
+                electorate.forEach(e -> e.sendMessage(MessageType.SCHEDULE));
+            }
+
+            if (numberOfElections == 1 && !acceptRejoins && parentAddress == null)
+                return;
+
+            // The next election reuses every connection, so it can only start once everyone has reported (or dropped out of) this one.
+            // A participant that dropped out is given a while to restart and report before it is left out.
             try
             {
-                Socket socket = serverSocket.accept();
-                logger.connectionAccepted(socket.getPort());
+                if (acceptRejoins)
+                    outcomeBarrier.await(Settings.getRejoinWindow(timeout, numberOfParticipants), TimeUnit.MILLISECONDS);
+                else
+                    outcomeBarrier.await();
+            }
+            catch (InterruptedException ex)
+            {
+                ex.printStackTrace();
+                return;
+            }
+
+            if (parentAddress != null)
+                forwardTally();
+        }
 
-                ParticipantThread thread = new ParticipantThread(socket);
-                threads.add(thread);
-                thread.start();
+        // Closing the connections tells persistent participants that the series is over.
+        try
+        {
+            serverSocket.close();
+
+            for (Socket socket : new ArrayList<>(participants.values()))
+            {
+                socket.close();
+            }
+
+            if (parentSocket != null)
+                parentSocket.close();
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    // Encode the DETAILS and VOTE_OPTIONS once for everyone, rather than once per participant, and write them out on several threads so
+    // that one slow connection does not hold up the rest. The DETAILS list every participant, and each participant skips its own ID. They
+    // are taken from the same electorate as the quorum, so a participant joining meanwhile is in neither until the next election.
+    private void startElection(List<ParticipantThread> electorate)
+    {
+        List<String> joined = electorate.stream().map(participant -> participant.participantId).collect(Collectors.toList());
+
+        List<String> voteOptions;
+
+        synchronized (options)
+        {
+            voteOptions = new ArrayList<>(options);
+        }
+
+        StringBuilder details = new StringBuilder("DETAILS ");
+        joined.forEach(participantId -> details.append(participantId).append(" "));
+
+        if (electorate.stream().anyMatch(participant -> participant.station))
+            details.append(MessageParser.STATIONS);
+
+        Broadcast broadcast = new Broadcast(details.toString().trim(), voteOptions);
+
+        // The list is the same for everyone, so it is logged once rather than once per participant.
+        logger.detailsSent(joined);
+
+        ExecutorService broadcastService = Executors.newFixedThreadPool(Math.max(1, Math.min(Settings.getCoordinatorBroadcastThreads(), electorate.size())));
+
+        for (ParticipantThread participant : electorate)
+        {
+            broadcastService.execute(() -> {
+                String voteOptionsMessage = participant.sendElection(broadcast);
+
+                logger.messageSent(participant.participantId, MessageType.DETAILS.name());
+                logger.voteOptionsSent(participant.participantId, voteOptions);
+                logger.messageSent(participant.participantId, voteOptionsMessage);
+            });
+        }
+
+        broadcastService.shutdown();
+
+        try
+        {
+            broadcastService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    // The DETAILS and VOTE_OPTIONS of one election, encoded once for every participant. With option sets cached, the VOTE_OPTIONS start
+    // with the hash of the option set, and a participant that already has the option set is sent only that.
+    private class Broadcast
+    {
+        private final String details;
+        private final String voteOptions;
+        private final String hashedVoteOptions;
+        private final String hash;
+
+        private final byte[] message;
+        private final byte[] hashedMessage;
+
+        public Broadcast(String details, List<String> options)
+        {
+            this.details = details;
+            this.hash = Settings.isOptionSetCacheEnabled() ? OptionSetCache.hash(options) : null;
+
+            StringBuilder voteOptions = new StringBuilder("VOTE_OPTIONS ");
+
+            if (hash != null)
+                voteOptions.append("#").append(hash).append(" ");
+
+            this.hashedVoteOptions = hash == null ? null : voteOptions.toString().trim();
+
+            options.forEach(option -> voteOptions.append(option).append(" "));
+            this.voteOptions = voteOptions.toString().trim();
+
+            this.message = (details + System.lineSeparator() + this.voteOptions + System.lineSeparator()).getBytes();
+            this.hashedMessage = hash == null ? null : (details + System.lineSeparator() + hashedVoteOptions + System.lineSeparator()).getBytes();
+
+            if (hash != null)
+                publishedOptionSets.put(hash, this.voteOptions);
+        }
+    }
+
+    private void electionCompleted(ElectionResult result)
+    {
+        logger.electionCompleted(result.getWinner(), result.getAgreeing(), result.getElectorate());
+
+        Consumer<ElectionResult> listener;
+
+        synchronized (this)
+        {
+            listener = resultListener;
+        }
+
+        if (listener != null)
+            listener.accept(result);
+    }
+
+    // Answer each connection to the query port with every election's result, then close it. Only listens on the loopback interface.
+    private void serveResults(int queryPort)
+    {
+        ServerSocket querySocket;
+
+        try
+        {
+            querySocket = new ServerSocket(queryPort, 50, InetAddress.getLoopbackAddress());
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            return;
+        }
+
+        Thread queryThread = new Thread(() -> {
+            while (!querySocket.isClosed())
+            {
+                try (Socket socket = querySocket.accept())
+                {
+                    PrintStream out = new PrintStream(socket.getOutputStream());
+
+                    for (ElectionResult result : getResults())
+                    {
+                        out.print(result.describe());
+                    }
+
+                    out.flush();
+                }
+                catch (IOException ex)
+                {
+                    ex.printStackTrace();
+                }
+            }
+        });
+
+        queryThread.setDaemon(true);
+        queryThread.start();
+    }
+
+    // Register with the root coordinator, which hands down the vote options so that every shard votes on the same ones.
+    private boolean joinRoot()
+    {
+        String coordinatorId = Address.of(Settings.getCoordinatorHost(), portNumber);
+        Backoff backoff = new Backoff(timeout / 50, timeout);
+
+        while (parentSocket == null)
+        {
+            try
+            {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(Address.host(parentAddress), Address.port(parentAddress)), timeout);
+
+                parentSocket = socket;
+            }
+            catch (ConnectException | SocketTimeoutException e)
+            {
+                System.out.println("Root coordinator at '" + parentAddress + "' not found. Attempting to reconnect...");
+
+                try
+                {
+                    backoff.sleep();
+                }
+                catch (InterruptedException ex)
+                {
+                    ex.printStackTrace();
+                    return false;
+                }
             }
             catch (IOException ex)
             {
                 ex.printStackTrace();
+                return false;
             }
         }
 
-        // Wait the timeout to ensure that all threads are at the point where they can receive the DETAILS and VOTE_OPTIONS.
-        ScheduledExecutorService senderService = Executors.newSingleThreadScheduledExecutor();
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(parentSocket.getInputStream()));
+            parentOut = new PrintStream(parentSocket.getOutputStream());
 
-        Runnable sendDetailsAndOptions = () -> {
-            threads.forEach(e -> e.sendMessage(MessageType.DETAILS));
-            threads.forEach(e -> e.sendMessage(MessageType.VOTE_OPTIONS));
-        };
+            String join = "JOIN " + coordinatorId;
+            parentOut.println(join);
+            logger.messageSent(parentAddress, join);
+
+            String message = in.readLine();
 
-        senderService.schedule(sendDetailsAndOptions, timeout, TimeUnit.MILLISECONDS);
-        senderService.shutdown();
+            if (message == null)
+                return false;
+
+            logger.messageReceived(parentAddress, message);
+            List<String> rootOptions = new MessageParser().parseVoteOptions(message);
+
+            synchronized (options)
+            {
+                options.clear();
+                options.addAll(rootOptions);
+            }
+
+            // The root answers every forwarded tally with the combined result over all the shards.
+            ExecutorService resultService = Executors.newSingleThreadExecutor();
+
+            resultService.execute(() -> {
+                try
+                {
+                    String result;
+
+                    while ((result = in.readLine()) != null)
+                    {
+                        logger.messageReceived(parentAddress, result);
+                    }
+                }
+                catch (IOException ignored) { }
+            });
+
+            resultService.shutdown();
+
+            return true;
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Every participant in the shard saw (roughly) the same votes, so pass on the tally that counted the most voters.
+    private void forwardTally()
+    {
+        Tally shardTally = new Tally();
+
+        synchronized (shardTallies)
+        {
+            for (Tally tally : shardTallies.values())
+            {
+                if (tally.getVoterCount() > shardTally.getVoterCount())
+                    shardTally = tally;
+            }
+        }
+
+        String message = shardTally.toMessage(MessageType.TALLY);
+
+        parentOut.println(message);
+        logger.messageSent(parentAddress, message);
     }
 
     private ServerSocket initialise(int portNumber)
     {
         try
         {
-            ServerSocket socket = new ServerSocket(portNumber);
+            ServerSocket socket = new ServerSocket(portNumber, Settings.getCoordinatorBacklog(numberOfParticipants));
             logger.startedListening(portNumber);
 
             return socket;
@@ -110,7 +497,13 @@ public class Coordinator
         private BufferedReader in;
         private PrintStream out;
 
-        private int portNumber;
+        private String participantId;
+        private volatile CountDownLatch outcomeBarrier;
+        private volatile boolean compressionOffered = false;
+        private volatile boolean station = false;
+
+        // The option sets this participant has, or null if it does not cache them and always needs them in full.
+        private volatile Set<String> knownOptionSets;
 
         public ParticipantThread(Socket socket)
         {
@@ -119,7 +512,7 @@ public class Coordinator
             try
             {
                 in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                out = new PrintStream(socket.getOutputStream());
+                out = new TracingPrintStream(socket.getOutputStream());
             }
             catch (IOException ex)
             {
@@ -137,32 +530,54 @@ public class Coordinator
 
                 ExecutorService joinService = Executors.newSingleThreadExecutor();
 
-                Callable<Integer> retrieveJoinRequest = () -> {
+                Callable<String> retrieveJoinRequest = () -> {
                     String joinMessage;
 
-                    joinMessage = in.readLine();
-                    logger.messageReceived(socket.getPort(), joinMessage);
-                    int joinRequest = parser.parseJoinRequest(joinMessage);
+                    joinMessage = LamportClock.receive(in.readLine());
+                    logger.messageReceived(Address.of(socket), joinMessage);
+                    String joinRequest = parser.parseJoinRequest(joinMessage);
                     logger.joinReceived(joinRequest);
 
+                    compressionOffered = parser.parseCompressionOffer(joinMessage);
+                    station = parser.parseStationFlag(joinMessage);
+
+                    List<String> cachedOptionSets = parser.parseCachedOptionSets(joinMessage);
+
+                    if (cachedOptionSets != null)
+                        knownOptionSets = Collections.synchronizedSet(new HashSet<>(cachedOptionSets));
+
                     return joinRequest;
                 };
 
-                Future<Integer> futureRequest = joinService.submit(retrieveJoinRequest);
+                Future<String> futureRequest = joinService.submit(retrieveJoinRequest);
 
                 try
                 {
-                    portNumber = futureRequest.get(timeout, TimeUnit.MILLISECONDS);
+                    participantId = futureRequest.get(timeout, TimeUnit.MILLISECONDS);
+
+                    // Compress what is sent to a participant that offered to, with the same dictionary as the participant decodes with.
+                    if (Settings.isCompressionEnabled() && compressionOffered)
+                        out = new CompressingPrintStream(socket.getOutputStream(), new MessageCodec(Collections.singletonList(participantId)));
 
+                    // A restarted participant takes over the slot and the outcome its previous connection still owed, together, whether or
+                    // not that connection has noticed it has gone yet.
                     synchronized (participants)
                     {
-                        participants.put(portNumber, socket);
+                        participants.put(participantId, socket);
+
+                        CountDownLatch owed = crashedVoters.remove(participantId);
+
+                        if (owed == null)
+                            owed = takeOwedOutcome(participantId);
+
+                        if (owed != null)
+                            awaitOutcome(owed);
                     }
                 }
                 // Handle timeout by closing the socket and interrupting this thread.
                 catch (TimeoutException ex)
                 {
-                    logger.participantCrashed(portNumber);
+                    logger.participantCrashed(Address.of(socket));
                     in.close();
                     out.close();
                     socket.close();
@@ -172,75 +587,175 @@ public class Coordinator
                 {
                     ex.printStackTrace();
                 }
+                finally
+                {
+                    joinBarrier.countDown();
+                }
 
                 joinService.shutdown();
 
-                message = in.readLine();
-                logger.messageReceived(portNumber, message);
-                Outcome outcome = parser.parseOutcome(message);
-                logger.outcomeReceived(portNumber, outcome.getVote());
+                while ((message = LamportClock.receive(in.readLine())) != null)
+                {
+                    logger.messageReceived(participantId, message);
+
+                    if (message.startsWith(MessageType.TALLY.name()))
+                    {
+                        shardTallies.put(participantId, parser.parseTally(message, MessageType.TALLY));
+                        continue;
+                    }
+
+                    // The participant was sent only the hash of an option set it turned out not to have.
+                    if (message.startsWith(MessageType.OPTIONS_REQUEST.name()))
+                    {
+                        String voteOptions = publishedOptionSets.get(parser.parseOptionsRequest(message));
+
+                        if (voteOptions != null)
+                        {
+                            out.println(voteOptions);
+                            logger.messageSent(participantId, voteOptions);
+                        }
+
+                        continue;
+                    }
+
+                    Outcome outcome = parser.parseOutcome(message);
+                    logger.outcomeReceived(participantId, outcome.getVote());
+
+                    // The parser takes the first voter listed as the sender, so put it back among the voters.
+                    List<String> voters = new ArrayList<>(outcome.getOtherParticipants());
+                    voters.add(outcome.getParticipant());
+
+                    ElectionResult result = currentResult;
+
+                    if (result != null)
+                    {
+                        for (Outcome disagreeing : result.add(new Outcome(participantId, outcome.getVote(), voters)))
+                        {
+                            logger.outcomeDisagreed(disagreeing.getParticipant(), disagreeing.getVote(), disagreeing.getOtherParticipants());
+                        }
+                    }
+
+                    outcomeReceived();
+                }
             }
             catch (IOException ex)
             {
-                ex.printStackTrace();
+                if (!socket.isClosed())
+                    ex.printStackTrace();
+            }
+
+            // The participant has gone, so leave it out of any later election and stop waiting for its outcome (unless it could restart).
+            // Under the same lock as a replacement registering, so that the outcome is handed over exactly once.
+            synchronized (participants)
+            {
+                participants.remove(participantId, socket);
+
+                CountDownLatch owed = takeOutcomeBarrier();
+
+                if (acceptRejoins && owed != null)
+                    crashedVoters.put(participantId, owed);
+                else if (owed != null)
+                    owed.countDown();
             }
         }
 
-        public void sendMessage(MessageType type) throws IllegalArgumentException
+        public synchronized void awaitOutcome(CountDownLatch outcomeBarrier)
         {
-            String message;
+            this.outcomeBarrier = outcomeBarrier;
+        }
 
-            switch (type)
-            {
-                case DETAILS:
-                    message = sendDetails();
-                    break;
-                case VOTE_OPTIONS:
-                    message = sendVoteOptions();
-                    break;
-                default:
-                    throw new IllegalArgumentException(type + " is an invalid message type for the coordinator.");
-            }
+        private synchronized CountDownLatch takeOutcomeBarrier()
+        {
+            CountDownLatch barrier = outcomeBarrier;
+            outcomeBarrier = null;
 
-            logger.messageSent(portNumber, message);
+            return barrier;
         }
 
-        private String sendDetails()
+        private void outcomeReceived()
         {
-            StringBuilder message = new StringBuilder("DETAILS ");
+            CountDownLatch barrier = takeOutcomeBarrier();
 
-            synchronized (participants)
+            if (barrier != null)
+                barrier.countDown();
+        }
+
+        // The outcome still owed by an earlier connection of the same participant, taken from it.
+        private CountDownLatch takeOwedOutcome(String participantId)
+        {
+            synchronized (threads)
             {
-                for (int portNumber : participants.keySet()) {
-                    if (portNumber != this.portNumber) {
-                        message.append(portNumber).append(" ");
+                for (ParticipantThread thread : threads)
+                {
+                    if (thread != this && participantId.equals(thread.participantId))
+                    {
+                        CountDownLatch owed = thread.takeOutcomeBarrier();
+
+                        if (owed != null)
+                            return owed;
                     }
                 }
-
-                out.println(message.toString().trim());
-                logger.detailsSent(this.portNumber,
-                        participants.keySet().stream()
-                                .filter(e -> e != this.portNumber)
-                                .collect(Collectors.toList()));
             }
 
-            return message.toString().trim();
+            return null;
         }
 
-        private String sendVoteOptions()
+        // Only the latest connection of a participant is in an election.
+        public boolean hasJoined()
         {
-            StringBuilder message = new StringBuilder("VOTE_OPTIONS ");
+            return participantId != null && participants.get(participantId) == socket;
+        }
 
-            synchronized (options)
+        // The DETAILS and VOTE_OPTIONS together, already encoded, returning the VOTE_OPTIONS that was sent. A compressed connection has its
+        // own deflater history, so it has to encode them itself.
+        public String sendElection(Broadcast broadcast)
+        {
+            Set<String> knownOptionSets = this.knownOptionSets;
+            boolean known = broadcast.hash != null && knownOptionSets != null && !knownOptionSets.add(broadcast.hash);
+
+            String voteOptions = known ? broadcast.hashedVoteOptions : broadcast.voteOptions;
+            byte[] message = known ? broadcast.hashedMessage : broadcast.message;
+
+            if (out instanceof CompressingPrintStream)
             {
-                for (String option : options) {
-                    message.append(option).append(" ");
-                }
+                out.println(broadcast.details);
+                out.println(voteOptions);
+            }
+            else
+            {
+                // The shared bytes cannot carry this connection's trace stamp, so it goes in front of them.
+                out.print(LamportClock.stamp(""));
+                out.write(message, 0, message.length);
+                out.flush();
+            }
 
-                out.println(message.toString().trim());
-                logger.voteOptionsSent(this.portNumber, options);
+            return voteOptions;
+        }
+
+        public void sendMessage(MessageType type) throws IllegalArgumentException
+        {
+            String message;
+
+            switch (type)
+            {
+                case SCHEDULE:
+                    message = sendSchedule();
+                    break;
+                default:
+                    throw new IllegalArgumentException(type + " is an invalid message type for the coordinator.");
             }
 
+            logger.messageSent(participantId, message);
+        }
+
+        private String sendSchedule()
+        {
+            StringBuilder message = new StringBuilder("SCHEDULE ");
+
+            message.append(scheduleEpoch).append(" ").append(Settings.getRoundLength(timeout));
+
+            out.println(message.toString().trim());
+
             return message.toString().trim();
         }
     }
@@ -40,6 +40,7 @@ public class CoordinatorLogger {
 	}
 	
 	protected void logMessage(String message) {
+		message = LamportClock.trace(message);
 		ps.println(message);
 		if (udpLoggerClient != null)
 			try {
@@ -62,78 +63,119 @@ public class CoordinatorLogger {
 	/**
 	 * To be invoked when the Coordinator receives a JOIN message
 	 * 
-	 * @param participantId the ID of the Participant that joined, i.e. the port where the Participant is listening on 
+	 * @param participantId the ID of the Participant that joined, i.e. the host:port where the Participant is listening on 
 	 */
-	public void joinReceived(int participantId) {
+	public void joinReceived(String participantId) {
 		logMessage("[C] JOIN received from " + participantId);
 	}
 	
 	/**
 	 * To be invoked when the Coordinator sends a DETAILS message to a Participant
 	 * 
-	 * @param destinationParticipantId the ID of destination Participant, i.e. the port where the Participant is listening on
+	 * @param destinationParticipantId the ID of destination Participant, i.e. the host:port where the Participant is listening on
 	 * @param participantIds the list of IDs of the Participants that joined
 	 */
-	public void detailsSent(int destinationParticipantId, List<Integer> participantIds) {
+	public void detailsSent(String destinationParticipantId, List<String> participantIds) {
 		logMessage("[C] details sent to " + destinationParticipantId + ": " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")));
 	}
 	
+	/**
+	 * To be invoked when the Coordinator sends the same DETAILS message to every Participant in an election
+	 * 
+	 * @param participantIds the list of IDs of the Participants in the election, each of which is sent the list
+	 */
+	public void detailsSent(List<String> participantIds) {
+		detailsSent("all participants", participantIds);
+	}
+	
 	/**
 	 * To be invoked when the Coordinator sends a VOTE_OPTIONS message to a Participant
 	 * 
-	 * @param destinationParticipantId the ID of destination Participant, i.e. the port where the Participant is listening on
+	 * @param destinationParticipantId the ID of destination Participant, i.e. the host:port where the Participant is listening on
 	 * @param votingOptions the list of voting options
 	 */
-	public void voteOptionsSent(int destinationParticipantId, List<String> votingOptions) {
+	public void voteOptionsSent(String destinationParticipantId, List<String> votingOptions) {
 		logMessage("[C] vote options sent to " + destinationParticipantId + ": " + votingOptions.stream().map(Object::toString).collect(Collectors.joining(", ")));
 	}
 	
 	/**
 	 * To be invoked when the Coordinator receives an OUTCOME message
 	 * 
-	 * @param participantId the ID of the Participant that sent the OUTCOME message, i.e. the port where the Participant is listening on
+	 * @param participantId the ID of the Participant that sent the OUTCOME message, i.e. the host:port where the Participant is listening on
 	 * @param vote the voting option sent by the Participant
 	 */
-	public void outcomeReceived(int participantId, String vote) {
+	public void outcomeReceived(String participantId, String vote) {
 		logMessage("[C] outcome " + vote + " received from " + participantId);
 	}
 	
+	/**
+	 * To be invoked when enough Participants have reported the same outcome for the election to be complete
+	 * 
+	 * @param vote the voting option the quorum agreed on
+	 * @param agreeing the number of Participants that reported it
+	 * @param electorate the number of Participants taking part in the election
+	 */
+	public void electionCompleted(String vote, int agreeing, int electorate) {
+		logMessage("[C] election complete: " + vote + " agreed by " + agreeing + " of " + electorate);
+	}
+	
+	/**
+	 * To be invoked when a Participant reports a different outcome to the one most Participants have reported
+	 * 
+	 * @param participantId the ID of the Participant that disagreed, i.e. the host:port where the Participant is listening on
+	 * @param vote the voting option sent by the Participant
+	 * @param participantIds the list of IDs of the Participants whose votes the outcome was based on
+	 */
+	public void outcomeDisagreed(String participantId, String vote, List<String> participantIds) {
+		logMessage("[C] outcome " + vote + " from " + participantId + " disagrees, based on votes of " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")));
+	}
+	
+	/**
+	 * To be invoked when the root Coordinator has combined the tallies of its sub-coordinators into the overall outcome
+	 * 
+	 * @param vote the voting option that won across every shard
+	 * @param participantIds the list of IDs of the Participants whose votes were counted, i.e. the host:port where each is listening on
+	 */
+	public void outcomeDecided(String vote, List<String> participantIds) {
+		logMessage("[C] outcome " + vote + " decided over " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")));
+	}
+	
 	/**
 	 * To be invoked when a Participant establishes a TCP connection with the Coordinator
 	 * 
-	 * @param otherPort the remote port number to which this socket is connected; note that this is different from the Participant ID 
+	 * @param otherAddress the remote host:port to which this socket is connected; note that this is different from the Participant ID 
 	 */
-	public void connectionAccepted(int otherPort) {
-		logMessage("[C] accepted connection from port " + otherPort);
+	public void connectionAccepted(String otherAddress) {
+		logMessage("[C] accepted connection from " + otherAddress);
 	}
 	
 	/**
 	 * To be invoked when the Coordinator sends a TCP message to a Participant
 	 * 
-	 * @param destinationPort the remote port number to which the message is sent; note that this is different from the Participant ID
+	 * @param destination the ID of the Participant (or, before it has joined, the remote host:port) to which the message is sent
 	 * @param message the message sent
 	 */
-	public void messageSent(int destinationPort, String message) {
-		logMessage("[C] message sent to " + destinationPort + ": \"" + message + "\"");
+	public void messageSent(String destination, String message) {
+		logMessage("[C] message sent to " + destination + ": \"" + message + "\"");
 	}
 	
 	/**
 	 * To be invoked when the Coordinator receives a TCP message from a Participant
 	 * 
-	 * @param senderPort the remote port number from which the message is received; note that this is different from the Participant ID
+	 * @param sender the ID of the Participant (or, before it has joined, the remote host:port) from which the message is received
 	 * @param message the message received
 	 */
-	public void messageReceived(int senderPort, String message) {
-		logMessage("[C] message received from " + senderPort + ": \"" + message + "\"");
+	public void messageReceived(String sender, String message) {
+		logMessage("[C] message received from " + sender + ": \"" + message + "\"");
 	}
 	
 	/**
 	 * To be invoked when the Coordinator detects the crash of a Participant. 
 	 * This method must be invoked only if the ID of the crashed Participant is known.
 	 * 
-	 * @param crashedParticipantId the ID of the crashed Participant, i.e. the port where the crashed Participant was listening on
+	 * @param crashedParticipantId the ID of the crashed Participant, i.e. the host:port where the crashed Participant was listening on
 	 */
-	public void participantCrashed(int crashedParticipantId) {
+	public void participantCrashed(String crashedParticipantId) {
 		logMessage("[C] participant crashed: " + crashedParticipantId);
 	}
 }
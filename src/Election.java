@@ -1,188 +1,440 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.*;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Election
 {
-    private final int numberOfRounds;
-    private final int timeout;
+    protected int numberOfRounds;
+    protected final int timeout;
 
-    private final int participant;
+    protected final String participant;
+    protected List<String> otherParticipants;
 
-    private final List<Vote> collectedVotes = Collections.synchronizedList(new ArrayList<>());
+    protected final List<Vote> collectedVotes = Collections.synchronizedList(new ArrayList<>());
     private final List<Vote> newVotes = Collections.synchronizedList(new ArrayList<>());
 
-    private final Map<Integer, PrintStream> outputConnections = Collections.synchronizedMap(new HashMap<>());
-    private final Map<Integer, BufferedReader> inputConnections = Collections.synchronizedMap(new HashMap<>());
+    // Kept up to date as votes are merged, so that the leader can be queried at any point in the election without recounting.
+    protected final Tally tally = new Tally();
+    private List<String> voteOptions;
+    private final Random random;
 
-    private final ServerSocket serverSocket;
+    // With option sets cached, a VOTE names each option by its position in the option set, written #<index>, rather than in full.
+    private final boolean optionIndices = Settings.isOptionSetCacheEnabled();
+    private final Map<String, Integer> optionIndex = new HashMap<>();
+    private Consumer<Outcome> decidedListener;
+    private boolean decidedNotified = false;
 
-    private final ParticipantLogger logger;
+    protected final Map<String, PrintStream> outputConnections = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, BlockingQueue<String>> inputConnections = Collections.synchronizedMap(new HashMap<>());
 
-    private final ExecutorService pollService;
+    // Every identified input connection, including those of participants dropped from the current election, so that a later
+    // election on the same mesh can pick them up again.
+    private final Map<String, BlockingQueue<String>> identifiedConnections = Collections.synchronizedMap(new HashMap<>());
+    private boolean connected = false;
 
-    public Election(int participant, List<Integer> otherParticipants, List<String> voteOptions, ParticipantLogger logger, int timeout)
+    private volatile int currentRound = 0;
+    private int firstRound = 1;
+
+    private WriteAheadLog writeAheadLog;
+    private final CompletableFuture<VoteResponse> stateTransfer = new CompletableFuture<>();
+
+    // When the Coordinator supplies a schedule, round r runs from scheduleStart + (r - 1) * roundLength on the monotonic clock.
+    private long scheduleStart;
+    private long roundLength;
+    private boolean scheduled = false;
+
+    // Queued on an input connection once it has closed, so that a crashed participant is given up on straight away.
+    private static final String CONNECTION_CLOSED = "";
+    private final Object messageArrived = new Object();
+
+    protected final FailureDetector failureDetector;
+    protected final int heartbeatInterval;
+    private ScheduledFuture<?> heartbeats;
+
+    protected final ServerSocket serverSocket;
+
+    protected final ParticipantLogger logger;
+
+    // The pools are shared by every election in the process, so that a ParticipantHost running many participants does not start a set
+    // of pools for each of them. Their threads are daemons, so they never keep the process alive once its participants are done.
+    private static final ExecutorService sharedPollService = Executors.newWorkStealingPool();
+
+    // Accepting and reading block indefinitely, so they get their own daemon threads rather than starving the work-stealing poll pool.
+    private static final ExecutorService sharedReceiveService = Executors.newCachedThreadPool(Election::daemonThread);
+
+    private static final ScheduledExecutorService heartbeatService = Executors.newScheduledThreadPool(1, Election::daemonThread);
+
+    protected final ExecutorService pollService = sharedPollService;
+    protected final ExecutorService receiveService = sharedReceiveService;
+
+    public Election(String participant, List<String> otherParticipants, List<String> voteOptions, ParticipantLogger logger, int timeout)
     {
-        this.numberOfRounds = otherParticipants.size();
+        this(participant, otherParticipants, voteOptions, logger, timeout, otherParticipants.size());
+    }
+
+    protected Election(String participant, List<String> otherParticipants, List<String> voteOptions, ParticipantLogger logger, int timeout, int numberOfRounds)
+    {
+        this.numberOfRounds = numberOfRounds;
         this.timeout = timeout;
 
         this.participant = participant;
+        this.otherParticipants = otherParticipants;
+
+        this.voteOptions = voteOptions;
+        indexOptions(voteOptions);
+
+        Long seed = Settings.getElectionSeed();
+        this.random = seed == null ? new Random() : seededRandom(seed, participant);
 
         Vote vote = decideVote(voteOptions);
         collectedVotes.add(vote);
         newVotes.add(vote);
+        tally.add(vote);
 
         this.logger = logger;
 
         this.serverSocket = initialise();
 
-        this.pollService = Executors.newWorkStealingPool();
-
-        establishConnections(otherParticipants);
+        this.failureDetector = FailureDetector.create(timeout);
+        this.heartbeatInterval = Settings.getHeartbeatInterval(timeout);
     }
 
     public Outcome holdElection()
     {
-        // Schedule each round so that each consecutive round starts after the timeout period so participants are (roughly) in sync with each other.
-        ScheduledExecutorService roundService = Executors.newSingleThreadScheduledExecutor();
-
-        for (int i = 1; i <= numberOfRounds; i++)
+        if (!connected)
         {
-            int roundNumber = i;
-
-            // Return a boolean so that we can block on the Future.get().
-            Callable<Boolean> round = () -> {
-                startRound(roundNumber);
-                return true;
-            };
+            establishConnections(otherParticipants);
+            connected = true;
+        }
 
-            Future<Boolean> futureBlock = roundService.schedule(round, timeout, TimeUnit.MILLISECONDS);
+        // Our own vote has to be on disk before it is sent, so that a restart does not vote again (and possibly differently).
+        if (firstRound == 1)
+            logVotes(new ArrayList<>(collectedVotes), 0);
 
+        // Start each round after the timeout period so participants are (roughly) in sync with each other. With a Coordinator-supplied
+        // schedule, every round instead starts at its absolute deadline, so delays cannot accumulate from round to round. The rounds run
+        // on the calling thread, so that a host with many participants needs no extra thread per election.
+        for (int roundNumber = firstRound; roundNumber <= numberOfRounds; roundNumber++)
+        {
             try
             {
-                Boolean waitForRound = futureBlock.get();
+                Thread.sleep(getRoundDelay(roundNumber));
             }
-            catch (InterruptedException | ExecutionException ex)
+            catch (InterruptedException ex)
             {
                 ex.printStackTrace();
             }
-        }
 
-        roundService.shutdown();
-        pollService.shutdown();
+            startRound(roundNumber);
+        }
 
-        List<Integer> voters = collectedVotes.stream().map(Vote::getParticipantPort).sorted().collect(Collectors.toList());
+        List<String> voters = tally.getVoters();
 
-        return new Outcome(participant, decideOutcome(collectedVotes, voters), voters);
+        return new Outcome(participant, decideOutcome(tally.getCounts(), voters), voters);
     }
 
-    public void startRound(int roundNumber)
+    // Start another election over the connections of the previous one. Participants missing from the new DETAILS are dropped from the
+    // mesh, and new ones are connected to, while everyone else's connections are reused as they are.
+    public void nextElection(List<String> otherParticipants, List<String> voteOptions)
     {
-        logger.beginRound(roundNumber);
+        scheduled = false;
 
-        Callable<Boolean> sendVotes = () -> {
-            for (int portNumber : outputConnections.keySet())
+        List<String> joinedParticipants = new ArrayList<>(otherParticipants);
+
+        synchronized (outputConnections)
+        {
+            outputConnections.keySet().retainAll(otherParticipants);
+            joinedParticipants.removeAll(outputConnections.keySet());
+        }
+
+        synchronized (inputConnections)
+        {
+            inputConnections.keySet().retainAll(otherParticipants);
+
+            for (String otherParticipant : otherParticipants)
             {
-                StringBuilder message = new StringBuilder("VOTE ");
+                BlockingQueue<String> messages = identifiedConnections.get(otherParticipant);
 
-                for (Vote vote : newVotes)
-                {
-                    message.append(vote.getParticipantPort()).append(" ")
-                            .append(vote.getVote()).append(" ");
-                }
+                if (messages != null)
+                    inputConnections.putIfAbsent(otherParticipant, messages);
+            }
 
-                outputConnections.get(portNumber).println(message.toString().trim());
-                logger.votesSent(portNumber, newVotes);
-                logger.messageSent(portNumber, message.toString().trim());
+            // Drop anything left over from the previous election, such as votes that arrived after a round had given up on their sender.
+            for (BlockingQueue<String> messages : inputConnections.values())
+            {
+                boolean closed = messages.contains(CONNECTION_CLOSED);
+                messages.clear();
+
+                if (closed)
+                    messages.add(CONNECTION_CLOSED);
             }
+        }
 
-            return true;
-        };
+        connectTo(joinedParticipants);
 
-        List<Callable<VoteResponse>> incomingVotes = new ArrayList<>();
+        this.otherParticipants = otherParticipants;
+        this.numberOfRounds = otherParticipants.size();
+        this.voteOptions = voteOptions;
+        indexOptions(voteOptions);
+        this.firstRound = 1;
 
-        for (int portNumber : inputConnections.keySet())
+        synchronized (collectedVotes)
         {
-            Callable<VoteResponse> retrieveVotes = () -> {
-                MessageParser parser = new MessageParser();
+            collectedVotes.clear();
+            newVotes.clear();
+            tally.clear();
 
-                String message = inputConnections.get(portNumber).readLine();
+            Vote vote = decideVote(voteOptions);
+            collectedVotes.add(vote);
+            newVotes.add(vote);
+            tally.add(vote);
+        }
 
-                if (roundNumber != 1)
-                    logger.messageReceived(portNumber, message);
+        synchronized (this)
+        {
+            decidedListener = null;
+            decidedNotified = false;
+        }
+    }
 
-                List<Vote> retrievedVotes = parser.parseVotes(message);
-                VoteResponse voteResponse;
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog)
+    {
+        this.writeAheadLog = writeAheadLog;
+    }
 
-                // If this is the first round, we need to use the response received to determine the correct ID of this input socket.
-                // Use this information to update the inputConnections map appropriately.
-                if (roundNumber == 1 && retrievedVotes.size() == 1)
+    // Carry on with an election that this participant was part of before it restarted, from the votes and last completed round in its
+    // write-ahead log. Rather than replaying the missed rounds, it reconnects to the other participants and asks one of them for its
+    // collected votes and current round, and joins in from the round after that.
+    public Outcome resumeElection(List<Vote> loggedVotes, int loggedRound)
+    {
+        synchronized (collectedVotes)
+        {
+            for (Vote vote : loggedVotes)
+            {
+                if (vote.getParticipant().equals(participant))
                 {
-                    int participant;
+                    collectedVotes.clear();
+                    tally.clear();
 
-                    synchronized (inputConnections)
-                    {
-                        BufferedReader reader = inputConnections.remove(portNumber);
+                    collectedVotes.add(vote);
+                    tally.add(vote);
+                }
+            }
+        }
 
-                        participant = retrievedVotes.get(0).getParticipantPort();
+        mergeVotes(loggedVotes);
 
-                        inputConnections.put(participant, reader);
-                    }
+        firstRound = loggedRound + 1;
 
-                    logger.messageReceived(participant, message);
-                    logger.votesReceived(participant, retrievedVotes);
+        VoteResponse state = rejoin(otherParticipants);
 
-                    voteResponse = new VoteResponse(participant);
-                    voteResponse.setVotes(retrievedVotes);
-                }
-                else if (!retrievedVotes.isEmpty())
-                {
-                    logger.votesReceived(portNumber, retrievedVotes);
+        synchronized (collectedVotes)
+        {
+            newVotes.clear();
+            newVotes.addAll(collectedVotes);
 
-                    voteResponse = new VoteResponse(portNumber);
-                    voteResponse.setVotes(retrievedVotes);
-                }
-                else
-                {
-                    voteResponse = new VoteResponse(portNumber);
-                }
+            if (state != null)
+            {
+                logVotes(mergeVotes(state.getVotes()), state.getRound());
 
-                return voteResponse;
-            };
+                // Only pass on the votes that the other participants did not already have.
+                Set<String> transferred = state.getVotes().stream().map(Vote::getParticipant).collect(Collectors.toSet());
+                newVotes.removeIf(vote -> transferred.contains(vote.getParticipant()));
 
-            incomingVotes.add(retrieveVotes);
+                firstRound = Math.max(firstRound, state.getRound() + 1);
+            }
         }
 
-        Future<Boolean> futureSent = pollService.submit(sendVotes);
+        connected = true;
+
+        return holdElection();
+    }
+
+    public String getLeader()
+    {
+        return tally.getLeader();
+    }
+
+    public long getMargin()
+    {
+        return tally.getMargin();
+    }
+
+    public Tally getTally()
+    {
+        return tally;
+    }
+
+    // Whether the leader can no longer be overtaken by the participants that have not been counted yet. Crashed participants are still
+    // treated as outstanding, so this errs on the side of undecided.
+    public boolean isDecided()
+    {
+        return tally.isDecided(otherParticipants.size() + 1 - tally.getVoterCount(), voteOptions);
+    }
+
+    // Have the given listener told once, with the outcome as counted so far, as soon as the election is decided.
+    public synchronized void onDecided(Consumer<Outcome> listener)
+    {
+        this.decidedListener = listener;
+
+        notifyIfDecided();
+    }
+
+    // Called whenever the tally changes.
+    protected void notifyIfDecided()
+    {
+        Consumer<Outcome> listener;
+
+        synchronized (this)
+        {
+            if (decidedListener == null || decidedNotified || !isDecided())
+                return;
+
+            decidedNotified = true;
+            listener = decidedListener;
+        }
+
+        listener.accept(new Outcome(participant, tally.getLeader(), tally.getVoters()));
+    }
+
+    // Stop heartbeating and free the port, leaving the shared pools to the other elections in the process.
+    public void close()
+    {
+        if (heartbeats != null)
+            heartbeats.cancel(false);
 
         try
         {
-            List<Future<VoteResponse>> futureVotes =
-                    pollService.invokeAll(incomingVotes, timeout, TimeUnit.MILLISECONDS);
+            if (serverSocket != null)
+                serverSocket.close();
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
 
-            List<Integer> participantsResponded = new ArrayList<>();
+    private static Thread daemonThread(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
 
-            // This boolean is not used, but allows us to ensure that the send task has either complete or timed out by this stage.
-            boolean messagesSent = futureSent.get();
+    // Anchor the schedule sent by the Coordinator (a wall-clock epoch) to the monotonic clock once, so that later wall-clock adjustments
+    // do not move the rounds.
+    public void setSchedule(long epoch, long roundLength)
+    {
+        this.scheduleStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(epoch - System.currentTimeMillis());
+        this.roundLength = roundLength;
+        this.scheduled = true;
+    }
 
-            newVotes.clear();
+    protected boolean isScheduled()
+    {
+        return scheduled;
+    }
+
+    protected long getRoundDelay(int roundNumber)
+    {
+        if (scheduled)
+            return Math.max(0, millisecondsUntil(scheduleStart + TimeUnit.MILLISECONDS.toNanos((roundNumber - 1) * roundLength)));
+
+        return timeout;
+    }
+
+    // The time (on the System.currentTimeMillis() clock) by which the given round, which started at roundStart, must end.
+    protected long getRoundDeadline(int roundNumber, long roundStart)
+    {
+        if (scheduled)
+            return System.currentTimeMillis() + millisecondsUntil(scheduleStart + TimeUnit.MILLISECONDS.toNanos(roundNumber * roundLength));
+
+        return roundStart + timeout;
+    }
+
+    private long millisecondsUntil(long nanoTime)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime - System.nanoTime());
+    }
 
-            List<VoteResponse> voteResponses = new ArrayList<>();
+    // Add every vote whose participant is not yet known to collectedVotes, returning only the votes that were actually added.
+    protected List<Vote> mergeVotes(List<Vote> votes)
+    {
+        List<Vote> mergedVotes = new ArrayList<>();
+
+        synchronized (collectedVotes)
+        {
+            Set<String> knownParticipants = collectedVotes.stream().map(Vote::getParticipant).collect(Collectors.toSet());
 
-            for (Future<VoteResponse> futureVote : futureVotes)
+            for (Vote vote : votes)
             {
-                try
+                if (knownParticipants.add(vote.getParticipant()))
                 {
-                    VoteResponse voteResponse = futureVote.get();
-                    voteResponses.add(voteResponse);
+                    collectedVotes.add(vote);
+                    mergedVotes.add(vote);
+                    tally.add(vote);
                 }
-                catch (CancellationException ignored) { }
             }
+        }
+
+        if (!mergedVotes.isEmpty())
+            notifyIfDecided();
+
+        return mergedVotes;
+    }
+
+    public void startRound(int roundNumber)
+    {
+        logger.beginRound(roundNumber);
+        currentRound = roundNumber;
+
+        Callable<Boolean> sendVotes = () -> {
+            Map<String, PrintStream> connections;
+
+            // A restarted participant may be reattached at any time, so send from a snapshot of the connections.
+            synchronized (outputConnections)
+            {
+                connections = new HashMap<>(outputConnections);
+            }
+
+            for (String portNumber : connections.keySet())
+            {
+                StringBuilder message = new StringBuilder("VOTE ");
+
+                for (Vote vote : newVotes)
+                {
+                    message.append(vote.getParticipant()).append(" ")
+                            .append(encodeOption(vote.getVote())).append(" ");
+                }
+
+                connections.get(portNumber).println(message.toString().trim());
+                logger.votesSent(portNumber, newVotes);
+                logger.messageSent(portNumber, message.toString().trim());
+            }
+
+            return true;
+        };
+
+        Future<Boolean> futureSent = pollService.submit(sendVotes);
+
+        try
+        {
+            List<VoteResponse> voteResponses = retrieveVotes(roundNumber);
+            List<String> participantsResponded = new ArrayList<>();
+
+            // This boolean is not used, but allows us to ensure that the send task has either complete or timed out by this stage.
+            boolean messagesSent = futureSent.get();
+
+            newVotes.clear();
 
             for (VoteResponse voteResponse : voteResponses)
             {
@@ -195,21 +447,21 @@ public class Election
                 newVotes.addAll(retrievedVotes.stream()
                         .filter(vote -> !collectedVotes
                                 .stream()
-                                .map(Vote::getParticipantPort)
+                                .map(Vote::getParticipant)
                                 .collect(Collectors.toList())
-                                .contains(vote.getParticipantPort()))
+                                .contains(vote.getParticipant()))
                         .filter(vote -> !newVotes
                                 .stream()
-                                .map(Vote::getParticipantPort)
+                                .map(Vote::getParticipant)
                                 .collect(Collectors.toList())
-                                .contains(vote.getParticipantPort()))
+                                .contains(vote.getParticipant()))
                         .collect(Collectors.toList()));
             }
 
-            List<Integer> crashedParticipants = new ArrayList<>();
+            List<String> crashedParticipants = new ArrayList<>();
 
             // Find all of the participants that have crashed over the course of this round and remove them from both socket maps.
-            for (int participant : inputConnections.keySet())
+            for (String participant : inputConnections.keySet())
             {
                 if (!participantsResponded.contains(participant))
                 {
@@ -218,13 +470,27 @@ public class Election
                 }
             }
 
-            for (int participant : crashedParticipants)
+            for (String participant : crashedParticipants)
             {
                 inputConnections.remove(participant);
                 outputConnections.remove(participant);
+                failureDetector.remove(participant);
+            }
+
+            // Under the same lock as mergeVotes and sendState, so a STATE is never sent with this round's votes only partly added, and a
+            // vote merged since the filter above is not added twice.
+            synchronized (collectedVotes)
+            {
+                Set<String> knownParticipants = collectedVotes.stream().map(Vote::getParticipant).collect(Collectors.toSet());
+                newVotes.removeIf(vote -> knownParticipants.contains(vote.getParticipant()));
+
+                collectedVotes.addAll(newVotes);
+                newVotes.forEach(tally::add);
             }
 
-            collectedVotes.addAll(newVotes);
+            logVotes(new ArrayList<>(newVotes), roundNumber);
+
+            notifyIfDecided();
         }
         catch (InterruptedException | ExecutionException ex)
         {
@@ -234,123 +500,549 @@ public class Election
         logger.endRound(roundNumber);
     }
 
-    private Vote decideVote(List<String> voteOptions)
+    // Wait for one VOTE message from every input connection. Rather than always waiting out the timeout for a silent participant, give
+    // up on it as soon as the failure detector suspects it (or its connection closes); the timeout remains the upper bound.
+    private List<VoteResponse> retrieveVotes(int roundNumber) throws InterruptedException
     {
-        Random random = new Random();
-        int optionNumber = random.nextInt(voteOptions.size());
+        Map<String, BlockingQueue<String>> pendingConnections;
+
+        synchronized (inputConnections)
+        {
+            pendingConnections = new HashMap<>(inputConnections);
+        }
+
+        List<VoteResponse> voteResponses = new ArrayList<>();
+        long deadline = getRoundDeadline(roundNumber, System.currentTimeMillis());
+
+        synchronized (messageArrived)
+        {
+            while (!pendingConnections.isEmpty())
+            {
+                Iterator<Map.Entry<String, BlockingQueue<String>>> iterator = pendingConnections.entrySet().iterator();
+
+                while (iterator.hasNext())
+                {
+                    Map.Entry<String, BlockingQueue<String>> connection = iterator.next();
+                    String message = connection.getValue().poll();
+
+                    if (message == null)
+                    {
+                        if (failureDetector.isSuspected(connection.getKey()))
+                            iterator.remove();
+                    }
+                    else if (message.equals(CONNECTION_CLOSED))
+                    {
+                        iterator.remove();
+                    }
+                    else
+                    {
+                        voteResponses.add(handleVotes(connection.getKey(), message, roundNumber));
+                        iterator.remove();
+                    }
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+
+                if (pendingConnections.isEmpty() || remaining <= 0)
+                    break;
+
+                messageArrived.wait(Math.min(remaining, Math.max(1, timeout / 20)));
+            }
+        }
 
-        return new Vote(participant, voteOptions.get(optionNumber));
+        return voteResponses;
     }
 
-    private String decideOutcome(List<Vote> votes, List<Integer> voters)
+    private VoteResponse handleVotes(String portNumber, String message, int roundNumber)
     {
-        Map<String, Long> tally = votes
-                .stream()
-                .map(Vote::getVote)
-                .collect(Collectors.groupingBy(e -> e, Collectors.counting()));
+        MessageParser parser = new MessageParser();
+
+        if (roundNumber != 1)
+            logger.messageReceived(portNumber, message);
 
-        String winningVote = "";
-        long winningVoteCount = 0;
+        List<Vote> retrievedVotes = decodeOptions(parser.parseVotes(message));
+        VoteResponse voteResponse;
 
-        // Determine the outcome by tallying up all the votes, and in the event of a tie, picking the earliest value in lexicographic order.
-        for (String vote : tally.keySet())
+        // If this is the first round, we need to use the response received to determine the correct ID of this input socket.
+        // Use this information to update the inputConnections map appropriately.
+        if (roundNumber == 1 && retrievedVotes.size() == 1)
         {
-            if (tally.get(vote) > winningVoteCount ||
-                    (tally.get(vote) == winningVoteCount && vote.compareTo(winningVote) < 0))
+            String participant;
+
+            synchronized (inputConnections)
             {
-                winningVote = vote;
-                winningVoteCount = tally.get(vote);
+                BlockingQueue<String> messages = inputConnections.remove(portNumber);
+
+                participant = retrievedVotes.get(0).getParticipant();
+
+                // A heartbeat may already have identified this connection.
+                if (messages != null)
+                {
+                    inputConnections.put(participant, messages);
+                    identifiedConnections.put(participant, messages);
+                }
             }
-        }
 
-        logger.outcomeDecided(winningVote, voters);
+            failureDetector.heartbeat(participant);
 
-        return winningVote;
-    }
+            logger.messageReceived(participant, message);
+            logger.votesReceived(participant, retrievedVotes);
 
-    private ServerSocket initialise()
-    {
-        try
+            voteResponse = new VoteResponse(participant);
+            voteResponse.setVotes(retrievedVotes);
+        }
+        else if (!retrievedVotes.isEmpty())
         {
-            ServerSocket socket = new ServerSocket(participant);
-            logger.startedListening();
+            failureDetector.heartbeat(portNumber);
+
+            logger.votesReceived(portNumber, retrievedVotes);
 
-            return socket;
+            voteResponse = new VoteResponse(portNumber);
+            voteResponse.setVotes(retrievedVotes);
         }
-        catch (IOException ex)
+        else
         {
-            ex.printStackTrace();
-            return null;
+            failureDetector.heartbeat(portNumber);
+
+            voteResponse = new VoteResponse(portNumber);
         }
+
+        return voteResponse;
     }
 
-    private void establishConnections(List<Integer> otherParticipants)
+    private synchronized void indexOptions(List<String> voteOptions)
     {
-        List<Callable<Integer>> callablePorts = new ArrayList<>();
+        optionIndex.clear();
 
-        for (Integer participant : otherParticipants)
+        for (int i = 0; i < voteOptions.size(); i++)
         {
-            Callable<Integer> outgoingSocket = () -> {
-                try
-                {
-                    Socket socket = new Socket("localhost", participant);
-
-                    logger.connectionEstablished(participant);
+            optionIndex.putIfAbsent(voteOptions.get(i), i);
+        }
+    }
 
-                    outputConnections.put(participant,
-                            new PrintStream(socket.getOutputStream()));
+    // A vote on several questions names each of its choices by position (#0|#4).
+    private synchronized String encodeOption(String vote)
+    {
+        if (!optionIndices)
+            return vote;
 
-                    return participant;
-                }
-                catch (CancellationException | ConnectException ex)
-                {
-                    return null;
-                }
-                catch (IOException e)
-                {
-                    e.printStackTrace();
-                    return null;
-                }
-            };
+        List<String> choices = new ArrayList<>();
 
-            callablePorts.add(outgoingSocket);
+        for (String choice : Questions.getChoices(vote))
+        {
+            Integer index = optionIndex.get(choice);
+            choices.add(index == null ? choice : "#" + index);
         }
 
-        for (int i = 0; i < otherParticipants.size(); i++)
-        {
-            Callable<Integer> incomingSocket = () -> {
-                try
-                {
-                    Socket socket = serverSocket.accept();
+        return Questions.join(choices);
+    }
 
-                    logger.connectionAccepted(socket.getPort());
+    // Options sent by position are always understood, whether or not this participant sends its own that way. A vote naming a position
+    // that is not in the option set is dropped, rather than taking the connection down with it.
+    private synchronized List<Vote> decodeOptions(List<Vote> votes)
+    {
+        List<Vote> decodedVotes = new ArrayList<>();
 
-                    inputConnections.put(socket.getPort(),
-                            new BufferedReader(new InputStreamReader(socket.getInputStream())));
+        for (Vote vote : votes)
+        {
+            if (vote.getVote().contains("#"))
+            {
+                List<String> choices = new ArrayList<>();
 
-                    return socket.getPort();
-                }
-                catch (IOException ex)
+                for (String choice : Questions.getChoices(vote.getVote()))
                 {
-                    ex.printStackTrace();
-                    return null;
+                    choices.add(choice.startsWith("#") ? decodeOption(choice) : choice);
                 }
-            };
 
-            callablePorts.add(incomingSocket);
+                if (!choices.contains(null))
+                    decodedVotes.add(new Vote(vote.getParticipant(), Questions.join(choices)));
+            }
+            else
+                decodedVotes.add(vote);
         }
 
+        return decodedVotes;
+    }
+
+    private String decodeOption(String choice)
+    {
         try
         {
-            List<Future<Integer>> futurePortNumbers = pollService.invokeAll(callablePorts, timeout, TimeUnit.MILLISECONDS);
-            List<Integer> portNumbers = new ArrayList<>();
+            int index = Integer.parseInt(choice.substring(1));
 
-            for (Future<Integer> futureParticipant : futurePortNumbers)
-            {
+            return index >= 0 && index < voteOptions.size() ? voteOptions.get(index) : null;
+        }
+        catch (NumberFormatException ex)
+        {
+            return null;
+        }
+    }
+
+    // Each participant draws from its own sequence, so that its votes do not depend on the order in which participants start.
+    public static Random seededRandom(long seed, String participant)
+    {
+        return new Random(seed * 31 + participant.hashCode());
+    }
+
+    // One choice per question, made in question order so that a single question draws the same vote it always has. A participant with
+    // ballots of its own votes with their counts instead.
+    private Vote decideVote(List<String> voteOptions)
+    {
+        BallotBox ballotBox = BallotBox.forParticipant(participant);
+
+        if (ballotBox != null)
+            return new Vote(participant, ballotBox.getVote(voteOptions));
+
+        List<String> choices = new ArrayList<>();
+
+        for (List<String> question : Questions.split(voteOptions))
+        {
+            int optionNumber = random.nextInt(question.size());
+            choices.add(question.get(optionNumber));
+        }
+
+        return new Vote(participant, Questions.join(choices));
+    }
+
+    protected String decideOutcome(List<Vote> votes, List<String> voters)
+    {
+        Map<String, Long> counts = votes
+                .stream()
+                .map(Vote::getVote)
+                .collect(Collectors.groupingBy(e -> e, Collectors.counting()));
+
+        return decideOutcome(counts, voters);
+    }
+
+    // With several questions the outcome names the winner of each, joined as a vote would be.
+    protected String decideOutcome(Map<String, Long> counts, List<String> voters)
+    {
+        List<String> winningVotes = new ArrayList<>();
+
+        for (Map<String, Long> questionTally : Questions.tallyByQuestion(BallotBox.weigh(counts)))
+        {
+            String winningVote = "";
+            long winningVoteCount = 0;
+
+            // Determine the outcome by tallying up all the votes, and in the event of a tie, picking the earliest value in lexicographic order.
+            for (String vote : questionTally.keySet())
+            {
+                if (questionTally.get(vote) > winningVoteCount ||
+                        (questionTally.get(vote) == winningVoteCount && vote.compareTo(winningVote) < 0))
+                {
+                    winningVote = vote;
+                    winningVoteCount = questionTally.get(vote);
+                }
+            }
+
+            winningVotes.add(winningVote);
+        }
+
+        String outcome = Questions.join(winningVotes);
+
+        logger.outcomeDecided(outcome, voters);
+
+        return outcome;
+    }
+
+    private ServerSocket initialise()
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        Backoff backoff = new Backoff(timeout / 50, timeout / 5);
+
+        while (true)
+        {
+            try
+            {
+                // Bind to this participant's own address, so that several participants can share a port on different loopback addresses.
+                // The socket is a channel's, so that the connections it accepts can be handed to the MessageReader.
+                ServerSocketChannel channel = ServerSocketChannel.open();
+
+                try
+                {
+                    channel.bind(new InetSocketAddress(InetAddress.getByName(Address.host(participant)), Address.port(participant) + Settings.getListenPortOffset()), 50);
+                }
+                catch (IOException ex)
+                {
+                    channel.close();
+                    throw ex;
+                }
+
+                logger.startedListening();
+
+                return channel.socket();
+            }
+            // The previous election's socket is only released once its accepting thread has woken up, so give it a moment.
+            catch (BindException ex)
+            {
+                if (System.currentTimeMillis() >= deadline)
+                {
+                    ex.printStackTrace();
+                    return null;
+                }
+
+                try
+                {
+                    backoff.sleep();
+                }
+                catch (InterruptedException interrupted)
+                {
+                    return null;
+                }
+            }
+            catch (IOException ex)
+            {
+                ex.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    // Keep accepting connections from other participants in the background, handing each one to the given handler on its own thread.
+    protected void acceptConnections(Consumer<Socket> handler)
+    {
+        receiveService.submit(() -> {
+            while (!serverSocket.isClosed())
+            {
+                try
+                {
+                    Socket socket = serverSocket.accept();
+                    logger.connectionAccepted(Address.of(socket));
+
+                    receiveService.submit(() -> handler.accept(socket));
+                }
+                catch (IOException ex)
+                {
+                    return;
+                }
+            }
+        });
+    }
+
+    // Connect to another participant, retrying for up to the timeout in case it has not started listening yet. Returns null if it never does.
+    protected Socket connect(String otherParticipant) throws IOException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        Backoff backoff = new Backoff(timeout / 50, timeout / 5);
+
+        while (true)
+        {
+            try
+            {
+                Socket socket = new Socket(Address.host(otherParticipant), Address.port(otherParticipant));
+                logger.connectionEstablished(otherParticipant);
+
+                return socket;
+            }
+            catch (ConnectException ex)
+            {
+                if (System.currentTimeMillis() >= deadline)
+                    return null;
+
+                try
+                {
+                    Thread.sleep(Math.min(backoff.nextDelay(), Math.max(1, deadline - System.currentTimeMillis())));
+                }
+                catch (InterruptedException interrupted)
+                {
+                    return null;
+                }
+            }
+        }
+    }
+
+    protected void establishConnections(List<String> otherParticipants)
+    {
+        acceptConnections(this::readMessages);
+
+        connectTo(otherParticipants);
+
+        startHeartbeats();
+    }
+
+    protected void startHeartbeats()
+    {
+        if (heartbeatInterval > 0)
+            heartbeats = heartbeatService.scheduleAtFixedRate(this::sendHeartbeats, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    // Reconnect to the other participants after a restart. Each connection is identified with a REJOIN, which the other side answers
+    // by sending its votes back over the same connection, since it has already given up on its own connection to this participant.
+    // The first participant to answer a STATE_REQUEST within the timeout supplies the state transfer.
+    private VoteResponse rejoin(List<String> otherParticipants)
+    {
+        acceptConnections(this::readMessages);
+
+        List<Callable<String>> connections = new ArrayList<>();
+
+        for (String otherParticipant : otherParticipants)
+        {
+            connections.add(() -> {
+                Socket socket = connect(otherParticipant);
+
+                if (socket == null)
+                    return null;
+
+                BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+                inputConnections.put(otherParticipant, messages);
+                identifiedConnections.put(otherParticipant, messages);
+                outputConnections.put(otherParticipant, new TracingPrintStream(socket.getOutputStream()));
+
+                receiveService.submit(() -> readMessages(socket, messages));
+
+                return otherParticipant;
+            });
+        }
+
+        List<String> reconnected = new ArrayList<>();
+
+        try
+        {
+            for (Future<String> connection : receiveService.invokeAll(connections))
+            {
+                try
+                {
+                    if (connection.get() != null)
+                        reconnected.add(connection.get());
+                }
+                catch (ExecutionException ex)
+                {
+                    ex.printStackTrace();
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        for (String otherParticipant : otherParticipants)
+        {
+            if (!reconnected.contains(otherParticipant))
+                logger.participantCrashed(otherParticipant);
+        }
+
+        startHeartbeats();
+
+        VoteResponse state = null;
+
+        for (String otherParticipant : reconnected)
+        {
+            MessageType type = state == null ? MessageType.STATE_REQUEST : MessageType.REJOIN;
+            String message = type.name() + " " + participant;
+
+            outputConnections.get(otherParticipant).println(message);
+            logger.messageSent(otherParticipant, message);
+
+            if (state != null)
+                continue;
+
+            try
+            {
+                state = stateTransfer.get(timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException ignored) { }
+            catch (InterruptedException | ExecutionException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        return state;
+    }
+
+    private void sendState(String otherParticipant, PrintStream out)
+    {
+        StringBuilder message = new StringBuilder("STATE ");
+        message.append(participant).append(" ").append(currentRound).append(" ");
+
+        List<Vote> votes;
+
+        synchronized (collectedVotes)
+        {
+            votes = new ArrayList<>(collectedVotes);
+        }
+
+        for (Vote vote : votes)
+        {
+            message.append(vote.getParticipant()).append(" ")
+                    .append(vote.getVote()).append(" ");
+        }
+
+        out.println(message.toString().trim());
+        logger.votesSent(otherParticipant, votes);
+        logger.messageSent(otherParticipant, message.toString().trim());
+    }
+
+    // Append the votes merged in a round (and, past round 0, the end of that round) to the write-ahead log, forcing it to disk once
+    // for the whole batch.
+    private void logVotes(List<Vote> votes, int roundNumber)
+    {
+        if (writeAheadLog == null)
+            return;
+
+        for (Vote vote : votes)
+        {
+            writeAheadLog.append("VOTE " + vote.getParticipant() + " " + vote.getVote());
+        }
+
+        if (roundNumber > 0)
+            writeAheadLog.append("ROUND " + roundNumber);
+
+        writeAheadLog.sync();
+    }
+
+    private void connectTo(List<String> otherParticipants)
+    {
+        List<Callable<String>> callablePorts = new ArrayList<>();
+
+        for (String participant : otherParticipants)
+        {
+            Callable<String> outgoingSocket = () -> {
+                try
+                {
+                    Socket socket = connect(participant);
+
+                    if (socket == null)
+                        return null;
+
+                    PrintStream out = Settings.isCompressionEnabled()
+                            ? negotiateCompression(socket, participant)
+                            : new TracingPrintStream(socket.getOutputStream());
+
+                    // Identify ourselves straight away, so the other participant's failure detector can watch us from the first round.
+                    if (heartbeatInterval > 0)
+                        out.println("HEARTBEAT " + this.participant);
+
+                    outputConnections.put(participant, out);
+
+                    return participant;
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                    return null;
+                }
+            };
+
+            callablePorts.add(outgoingSocket);
+        }
+
+        try
+        {
+            // Connecting blocks (and retries until the timeout), so use the receive threads rather than the work-stealing pool.
+            List<Future<String>> futurePortNumbers = receiveService.invokeAll(callablePorts);
+            List<String> portNumbers = new ArrayList<>();
+
+            for (Future<String> futureParticipant : futurePortNumbers)
+            {
                 try
                 {
-                    int portNumber = futureParticipant.get();
-                    portNumbers.add(portNumber);
+                    String portNumber = futureParticipant.get();
+
+                    if (portNumber != null)
+                        portNumbers.add(portNumber);
                 }
                 catch (CancellationException ignored) { }
                 catch (InterruptedException | ExecutionException ex)
@@ -359,8 +1051,8 @@ public class Election
                 }
             }
 
-            // For every other participant sent by the Coordinator that has not now opened a connection to this participant, log it as having crashed.
-            for (int participant : otherParticipants)
+            // For every other participant sent by the Coordinator that this participant could not connect to, log it as having crashed.
+            for (String participant : otherParticipants)
             {
                 if (!portNumbers.contains(participant))
                 {
@@ -373,4 +1065,219 @@ public class Election
             ex.printStackTrace();
         }
     }
+
+    // Offer to compress what is sent over a new connection, and wait (up to the timeout) for the other participant to accept. It does
+    // so by answering with its ID, and declines with a bare COMPRESS.
+    protected PrintStream negotiateCompression(Socket socket, String otherParticipant) throws IOException
+    {
+        PrintStream out = new TracingPrintStream(socket.getOutputStream());
+        out.println(MessageType.COMPRESS.name() + " " + participant);
+
+        socket.setSoTimeout(timeout);
+
+        try
+        {
+            String reply = LamportClock.receive(new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine());
+
+            if (reply != null && otherParticipant.equals(new MessageParser().parseCompress(reply)))
+                return new CompressingPrintStream(socket.getOutputStream(), createCodec(participant, otherParticipant));
+        }
+        catch (SocketTimeoutException ignored) { }
+        finally
+        {
+            socket.setSoTimeout(0);
+        }
+
+        return out;
+    }
+
+    // The other participant offering to compress what it sends over this connection. The codec to decode what follows with is returned
+    // if the offer is accepted, and null if not.
+    protected MessageCodec answerCompression(Socket socket, String message) throws IOException
+    {
+        String sender = new MessageParser().parseCompress(message);
+        PrintStream reply = new TracingPrintStream(outputStream(socket));
+
+        if (!Settings.isCompressionEnabled())
+        {
+            reply.println(MessageType.COMPRESS.name());
+            return null;
+        }
+
+        reply.println(MessageType.COMPRESS.name() + " " + participant);
+
+        return createCodec(sender, participant);
+    }
+
+    // Both ends of a connection build the same dictionary, from the vote options and the IDs of the two participants.
+    private MessageCodec createCodec(String sender, String receiver)
+    {
+        List<String> words = new ArrayList<>(voteOptions);
+        words.add(sender);
+        words.add(receiver);
+
+        return new MessageCodec(words);
+    }
+
+    // Heartbeats are not logged, as they would drown out the protocol messages.
+    private void sendHeartbeats()
+    {
+        synchronized (outputConnections)
+        {
+            for (PrintStream out : outputConnections.values())
+            {
+                out.println("HEARTBEAT " + participant);
+            }
+        }
+    }
+
+    // Read every message arriving on a connection from another participant as it arrives, so heartbeats reach the failure detector on
+    // time. VOTE messages are queued for the round that is waiting for them. Accepted connections are read by the MessageReader, so that
+    // they take no thread of their own.
+    private void readMessages(Socket socket)
+    {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        inputConnections.put(Address.of(socket), messages);
+
+        MessageHandler handler = new MessageHandler(socket, messages);
+
+        try
+        {
+            MessageReader.getReader().register(socket.getChannel(), handler);
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            handler.closed();
+        }
+    }
+
+    // The connections this participant opens itself are only read after a restart, so they are simply read by a thread each.
+    private void readMessages(Socket socket, BlockingQueue<String> messages)
+    {
+        MessageHandler handler = new MessageHandler(socket, messages);
+
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String line;
+
+            while ((line = in.readLine()) != null)
+            {
+                handler.read(line);
+            }
+        }
+        catch (IOException ignored) { }
+
+        handler.closed();
+    }
+
+    // A connection read by the MessageReader is non-blocking, so it cannot be written through its socket's own stream.
+    protected static OutputStream outputStream(Socket socket) throws IOException
+    {
+        SocketChannel channel = socket.getChannel();
+
+        return channel != null && !channel.isBlocking() ? MessageReader.outputStream(channel) : socket.getOutputStream();
+    }
+
+    private class MessageHandler implements MessageReader.Handler
+    {
+        private final Socket socket;
+        private final BlockingQueue<String> messages;
+        private final MessageParser parser = new MessageParser();
+        private MessageCodec codec = null;
+
+        public MessageHandler(Socket socket, BlockingQueue<String> messages)
+        {
+            this.socket = socket;
+            this.messages = messages;
+        }
+
+        @Override
+        public void read(String line) throws IOException
+        {
+            String message = LamportClock.receive(line);
+
+            if (codec != null)
+                message = codec.decode(message);
+
+            if (message.startsWith(MessageType.COMPRESS.name()))
+            {
+                codec = answerCompression(socket, message);
+                return;
+            }
+
+            if (message.startsWith(MessageType.HEARTBEAT.name()))
+            {
+                String sender = parser.parseHeartbeat(message);
+
+                // The first heartbeat identifies the connection, which otherwise happens on the first VOTE message.
+                identify(socket, messages, sender, false);
+
+                failureDetector.heartbeat(sender);
+                return;
+            }
+
+            // A restarted participant reusing this connection for both directions, in place of the ones it had before it crashed.
+            if (message.startsWith(MessageType.REJOIN.name()) || message.startsWith(MessageType.STATE_REQUEST.name()))
+            {
+                String sender = parser.parseRejoin(message);
+                logger.messageReceived(sender, message);
+
+                identify(socket, messages, sender, true);
+                failureDetector.heartbeat(sender);
+
+                PrintStream out = new TracingPrintStream(outputStream(socket));
+                outputConnections.put(sender, out);
+
+                if (message.startsWith(MessageType.STATE_REQUEST.name()))
+                    sendState(sender, out);
+
+                return;
+            }
+
+            if (message.startsWith(MessageType.STATE.name()))
+            {
+                VoteResponse state = parser.parseState(message);
+
+                logger.messageReceived(state.getParticipant(), message);
+                logger.votesReceived(state.getParticipant(), state.getVotes());
+
+                stateTransfer.complete(state);
+                return;
+            }
+
+            messages.add(message);
+
+            synchronized (messageArrived)
+            {
+                messageArrived.notifyAll();
+            }
+        }
+
+        @Override
+        public void closed()
+        {
+            messages.add(CONNECTION_CLOSED);
+
+            synchronized (messageArrived)
+            {
+                messageArrived.notifyAll();
+            }
+        }
+    }
+
+    // A rejoining participant is identified even if a round has already given up on its connection, since it arrived mid-round.
+    private void identify(Socket socket, BlockingQueue<String> messages, String sender, boolean rejoining)
+    {
+        synchronized (inputConnections)
+        {
+            if (inputConnections.get(Address.of(socket)) == messages || rejoining)
+            {
+                inputConnections.remove(Address.of(socket), messages);
+                inputConnections.put(sender, messages);
+                identifiedConnections.put(sender, messages);
+            }
+        }
+    }
 }
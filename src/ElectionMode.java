@@ -0,0 +1,8 @@
+public enum ElectionMode
+{
+    FULL_MESH,
+    GOSSIP,
+    AGGREGATION,
+    MULTICAST,
+    PIPELINED
+}
@@ -0,0 +1,170 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+// The outcomes reported to the Coordinator for one election, collected as they arrive from every ParticipantThread. The election is
+// complete once a quorum of participants have reported the same outcome, whatever the stragglers go on to report, and any participant
+// reporting a different outcome is kept apart, with the voters it based that outcome on, as having disagreed. Until then the winner is
+// only the most common outcome so far, so nobody is said to have disagreed before the quorum settles it.
+public class ElectionResult
+{
+    private final int election;
+    private final int electorate;
+    private final int quorum;
+
+    private final Map<String, Outcome> outcomes = new TreeMap<>(Address.ORDER);
+    private final Map<String, Integer> counts = new TreeMap<>();
+    private String winner;
+    private boolean complete = false;
+
+    private final List<Consumer<ElectionResult>> listeners = new ArrayList<>();
+
+    public ElectionResult(int election, int electorate, int quorum)
+    {
+        this.election = election;
+        this.electorate = electorate;
+        this.quorum = Math.max(1, Math.min(quorum, electorate));
+    }
+
+    // Returns the outcomes now known to disagree with the winner: every one reported so far that does not match it once the quorum is
+    // reached, and after that, this outcome if it does not.
+    public List<Outcome> add(Outcome outcome)
+    {
+        List<Consumer<ElectionResult>> completed = Collections.emptyList();
+        List<Outcome> disagreeing = new ArrayList<>();
+
+        synchronized (this)
+        {
+            Outcome previous = outcomes.put(outcome.getParticipant(), outcome);
+
+            if (previous != null)
+                counts.computeIfPresent(previous.getVote(), (vote, count) -> count > 1 ? count - 1 : null);
+
+            counts.merge(outcome.getVote(), 1, Integer::sum);
+
+            if (complete)
+            {
+                if (!outcome.getVote().equals(winner))
+                    disagreeing.add(outcome);
+            }
+            else
+            {
+                // The most reported outcome, ties going to the earliest in lexicographic order as they do when deciding an election.
+                winner = null;
+
+                for (Map.Entry<String, Integer> count : counts.entrySet())
+                {
+                    if (winner == null || count.getValue() > counts.get(winner))
+                        winner = count.getKey();
+                }
+
+                if (counts.get(winner) >= quorum)
+                {
+                    complete = true;
+                    completed = new ArrayList<>(listeners);
+                    disagreeing = getDisagreeing();
+                }
+            }
+        }
+
+        completed.forEach(listener -> listener.accept(this));
+
+        return disagreeing;
+    }
+
+    // Have the listener told once the quorum agrees, straight away if it already has.
+    public void onComplete(Consumer<ElectionResult> listener)
+    {
+        synchronized (this)
+        {
+            listeners.add(listener);
+
+            if (!complete)
+                return;
+        }
+
+        listener.accept(this);
+    }
+
+    public int getElection()
+    {
+        return election;
+    }
+
+    public int getElectorate()
+    {
+        return electorate;
+    }
+
+    public int getQuorum()
+    {
+        return quorum;
+    }
+
+    public synchronized boolean isComplete()
+    {
+        return complete;
+    }
+
+    public synchronized String getWinner()
+    {
+        return winner;
+    }
+
+    public synchronized int getAgreeing()
+    {
+        return winner == null ? 0 : counts.get(winner);
+    }
+
+    public synchronized int getReported()
+    {
+        return outcomes.size();
+    }
+
+    public synchronized List<Outcome> getOutcomes()
+    {
+        return new ArrayList<>(outcomes.values());
+    }
+
+    public synchronized List<Outcome> getDisagreeing()
+    {
+        List<Outcome> disagreeing = new ArrayList<>();
+
+        for (Outcome outcome : outcomes.values())
+        {
+            if (!outcome.getVote().equals(winner))
+                disagreeing.add(outcome);
+        }
+
+        return disagreeing;
+    }
+
+    // One summary line (election number, COMPLETE or PENDING, winner, agreeing, reported, electorate), then a line per reported outcome:
+    // OUTCOME for those agreeing with the winner and DISAGREE for the rest, each followed by the participant, its outcome and its voters.
+    public synchronized String describe()
+    {
+        StringBuilder description = new StringBuilder("ELECTION ");
+
+        description.append(election).append(" ")
+                .append(complete ? "COMPLETE" : "PENDING").append(" ")
+                .append(winner == null ? "-" : winner).append(" ")
+                .append(getAgreeing()).append(" ")
+                .append(outcomes.size()).append(" ")
+                .append(electorate).append("\n");
+
+        for (Outcome outcome : outcomes.values())
+        {
+            description.append(outcome.getVote().equals(winner) ? "OUTCOME " : "DISAGREE ")
+                    .append(outcome.getParticipant()).append(" ")
+                    .append(outcome.getVote());
+
+            for (String voter : outcome.getOtherParticipants())
+            {
+                description.append(" ").append(voter);
+            }
+
+            description.append("\n");
+        }
+
+        return description.toString();
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.*;
+
+// Latencies drawn at random from those seen in a recorded run, kept apart for the links to and from the Coordinator and the links
+// between participants, as the Coordinator's messages wait behind its other connections where a participant's do not.
+public class EmpiricalLatencyModel implements LatencyModel
+{
+    private final long[] coordinatorLatencies;
+    private final long[] participantLatencies;
+
+    // Takes latencies in microseconds by link, as "<sender> -> <receiver>", with the Coordinator as C.
+    public EmpiricalLatencyModel(Map<String, List<Long>> latencies, String coordinator)
+    {
+        List<Long> coordinatorSamples = new ArrayList<>();
+        List<Long> participantSamples = new ArrayList<>();
+
+        latencies.forEach((link, samples) -> {
+            String[] ends = link.split(" -> ");
+            (ends[0].equals(coordinator) || ends[1].equals(coordinator) ? coordinatorSamples : participantSamples).addAll(samples);
+        });
+
+        // A run with only one kind of link stands in for the other.
+        this.coordinatorLatencies = sorted(coordinatorSamples.isEmpty() ? participantSamples : coordinatorSamples);
+        this.participantLatencies = sorted(participantSamples.isEmpty() ? coordinatorSamples : participantSamples);
+
+        if (coordinatorLatencies.length == 0)
+            throw new IllegalArgumentException("No message latencies were recorded.");
+    }
+
+    private static long[] sorted(List<Long> samples)
+    {
+        long[] sorted = samples.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+
+        return sorted;
+    }
+
+    @Override
+    public long sample(String from, String to, Random random)
+    {
+        long[] latencies = from.equals(ProtocolModel.COORDINATOR) || to.equals(ProtocolModel.COORDINATOR)
+                ? coordinatorLatencies : participantLatencies;
+
+        return latencies[random.nextInt(latencies.length)];
+    }
+
+    public long getQuantile(boolean coordinator, double quantile)
+    {
+        long[] latencies = coordinator ? coordinatorLatencies : participantLatencies;
+
+        return latencies[Math.min(latencies.length - 1, (int) (quantile * latencies.length))];
+    }
+
+    public int getSampleCount(boolean coordinator)
+    {
+        return (coordinator ? coordinatorLatencies : participantLatencies).length;
+    }
+}
@@ -0,0 +1,22 @@
+// Decides when a silent process should be treated as crashed, from the times at which messages (including heartbeats) arrive from it.
+public interface FailureDetector
+{
+    void heartbeat(String process);
+
+    boolean isSuspected(String process);
+
+    void remove(String process);
+
+    static FailureDetector create(int timeout)
+    {
+        switch (Settings.getFailureDetector())
+        {
+            case "phi":
+                return new PhiAccrualFailureDetector(Settings.getPhiThreshold(), Settings.getPhiSampleSize(),
+                        Settings.getPhiMinStdDeviation(timeout), Settings.getHeartbeatInterval(timeout));
+            default:
+                // Without heartbeats a participant is only heard from once a round, so leave it to the round's own timeout.
+                return new TimeoutFailureDetector(Settings.getHeartbeatInterval(timeout) > 0 ? timeout : Long.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,758 @@
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// A loopback proxy that stands between participants, the Coordinator and the UDPLoggerServer, and makes the links between them behave
+// like a real network: each link it forwards has a delay (with jitter drawn from a distribution), a bandwidth cap, loss, resets, and
+// partitions at set times. Participants, the Coordinator and the logger are pointed at the proxy's ports rather than at each other.
+//
+// Usage: FaultProxy <scenario file>
+//
+// The scenario file has one directive per line, with times in milliseconds from when the proxy starts:
+//
+//   tcp <listen port> <host:port> [options]            forward TCP connections, e.g. from participants to the Coordinator
+//   udp <listen port> <host:port> [options]            forward datagrams, e.g. from UDPLoggerClients to the UDPLoggerServer
+//   mesh <first port> <count> <offset> [options]       a tcp link from each of count ports to the port offset above it, for the
+//                                                       connections between participants started with -Dparticipant.listenPortOffset
+//   partition <listen port> <start> <duration> [reset] cut a link (or with reset, drop its connections) for a while
+//   seed <seed>                                        make the faults repeatable
+//   stats <interval>                                   print the counters of every link this often, as well as at exit
+//
+// with the options delay=<ms>, jitter=<ms>, distribution=exponential|uniform|normal|constant, bandwidth=<bytes/s>, loss=<probability>,
+// rto=<ms> (how late a lost TCP segment turns up once retransmitted), reset=<probability of resetting a connection per read>, and
+// connect=<ms> (how long to keep trying to reach a TCP link's target before resetting the connection to it, 2000 by default).
+public class FaultProxy
+{
+    private final Map<Integer, Link> links = new LinkedHashMap<>();
+    private final long startTime = System.nanoTime();
+    private Random random = new Random();
+    private int statsInterval = 0;
+
+    public static void main(String[] args)
+    {
+        FaultProxy proxy = new FaultProxy();
+
+        try
+        {
+            proxy.load(Paths.get(args[0]));
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            System.err.println("Could not read the scenario " + args[0] + ": " + ex.getMessage());
+            return;
+        }
+
+        proxy.start();
+    }
+
+    private void load(Path scenario) throws IOException
+    {
+        List<String[]> partitions = new ArrayList<>();
+        int lineNumber = 0;
+
+        for (String line : Files.readAllLines(scenario))
+        {
+            lineNumber++;
+            line = line.replaceAll("#.*", "").trim();
+
+            if (line.isEmpty())
+                continue;
+
+            String[] tokens = line.split("\\s+");
+
+            try
+            {
+                switch (tokens[0])
+                {
+                    case "tcp":
+                    case "udp":
+                        addLink(tokens[0].equals("tcp"), Integer.parseInt(tokens[1]), tokens[2], parseProfile(tokens, 3));
+                        break;
+
+                    case "mesh":
+                        int firstPort = Integer.parseInt(tokens[1]);
+                        int offset = Integer.parseInt(tokens[3]);
+
+                        for (int port = firstPort; port < firstPort + Integer.parseInt(tokens[2]); port++)
+                        {
+                            addLink(true, port, Address.of("localhost", port + offset), parseProfile(tokens, 4));
+                        }
+                        break;
+
+                    // Partitions are added once every link is known, so that they may be given before the links they cut.
+                    case "partition":
+                        partitions.add(tokens);
+                        break;
+
+                    case "seed":
+                        random = new Random(Long.parseLong(tokens[1]));
+                        break;
+
+                    case "stats":
+                        statsInterval = Integer.parseInt(tokens[1]);
+                        break;
+
+                    default:
+                        throw new IllegalArgumentException("unknown directive " + tokens[0]);
+                }
+            }
+            catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex)
+            {
+                throw new IllegalArgumentException("line " + lineNumber + ": " + ex.getMessage());
+            }
+        }
+
+        for (String[] tokens : partitions)
+        {
+            Link link = links.get(Integer.parseInt(tokens[1]));
+
+            if (link == null)
+                throw new IllegalArgumentException("no link listens on " + tokens[1] + " to partition");
+
+            link.partitions.add(new Partition(Long.parseLong(tokens[2]), Long.parseLong(tokens[3]), tokens.length > 4 && tokens[4].equals("reset")));
+        }
+    }
+
+    private void addLink(boolean tcp, int listenPort, String target, Profile profile)
+    {
+        Link link = tcp ? new TcpLink(listenPort, target, profile) : new UdpLink(listenPort, target, profile);
+
+        if (links.put(listenPort, link) != null)
+            throw new IllegalArgumentException("more than one link listens on " + listenPort);
+    }
+
+    private Profile parseProfile(String[] tokens, int start)
+    {
+        Profile profile = new Profile();
+
+        for (int i = start; i < tokens.length; i++)
+        {
+            String[] option = tokens[i].split("=", 2);
+
+            if (option.length < 2)
+                throw new IllegalArgumentException("expected key=value, not " + tokens[i]);
+
+            switch (option[0])
+            {
+                case "delay": profile.delay = Double.parseDouble(option[1]); break;
+                case "jitter": profile.jitter = Double.parseDouble(option[1]); break;
+                case "distribution": profile.distribution = option[1].toLowerCase(); break;
+                case "bandwidth": profile.bandwidth = Double.parseDouble(option[1]); break;
+                case "loss": profile.loss = Double.parseDouble(option[1]); break;
+                case "rto": profile.retransmissionTimeout = Double.parseDouble(option[1]); break;
+                case "reset": profile.reset = Double.parseDouble(option[1]); break;
+                case "connect": profile.connectTimeout = Long.parseLong(option[1]); break;
+                default: throw new IllegalArgumentException("unknown option " + option[0]);
+            }
+        }
+
+        if (!Arrays.asList("exponential", "uniform", "normal", "constant").contains(profile.distribution))
+            throw new IllegalArgumentException("unknown distribution " + profile.distribution);
+
+        return profile;
+    }
+
+    private void start()
+    {
+        for (Link link : links.values())
+        {
+            try
+            {
+                link.open();
+                System.out.println("Forwarding " + link);
+            }
+            catch (IOException ex)
+            {
+                System.err.println("Could not listen on " + link.listenPort + ": " + ex.getMessage());
+            }
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::printStats));
+
+        if (statsInterval <= 0)
+            return;
+
+        ScheduledExecutorService statsService = Executors.newSingleThreadScheduledExecutor();
+        statsService.scheduleAtFixedRate(this::printStats, statsInterval, statsInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void printStats()
+    {
+        StringBuilder stats = new StringBuilder();
+        stats.append(String.format("STATS %.1f s\n", elapsed() / 1e9));
+
+        for (Link link : links.values())
+        {
+            stats.append("  ").append(link.describeStats()).append("\n");
+        }
+
+        System.out.print(stats);
+        System.out.flush();
+    }
+
+    private long elapsed()
+    {
+        return System.nanoTime() - startTime;
+    }
+
+    private static void sleepUntil(long time) throws InterruptedException
+    {
+        long delay;
+
+        while ((delay = time - System.nanoTime()) > 0)
+        {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+    private static class Profile
+    {
+        private double delay = 0;
+        private double jitter = 0;
+        private String distribution = "exponential";
+        private double bandwidth = 0;
+        private double loss = 0;
+        private double retransmissionTimeout = 200;
+        private double reset = 0;
+        private long connectTimeout = 2000;
+
+        @Override
+        public String toString()
+        {
+            return String.format("delay %.1f ms + %s jitter %.1f ms, bandwidth %s, loss %.3f, reset %.4f", delay, distribution, jitter,
+                    bandwidth > 0 ? (long) bandwidth + " B/s" : "unlimited", loss, reset);
+        }
+    }
+
+    private static class Partition
+    {
+        private final long start;
+        private final long end;
+        private final boolean reset;
+
+        public Partition(long start, long duration, boolean reset)
+        {
+            this.start = TimeUnit.MILLISECONDS.toNanos(start);
+            this.end = TimeUnit.MILLISECONDS.toNanos(start + duration);
+            this.reset = reset;
+        }
+    }
+
+    // One way along a link. Bytes leave one after another at the link's bandwidth, and then take the link's delay to arrive.
+    private class Direction
+    {
+        private long wireFree = 0;
+        private long lastArrival = 0;
+
+        // The time (from System.nanoTime) when the bytes sent now arrive, or -1 if they are lost. On an ordered connection nothing
+        // arrives ahead of what was sent before it, and what is lost turns up a retransmission timeout later rather than not at all.
+        public synchronized long arrival(Link link, int bytes, boolean ordered)
+        {
+            long now = System.nanoTime();
+            long departure = now;
+
+            if (link.profile.bandwidth > 0)
+            {
+                wireFree = Math.max(wireFree, now) + (long) (1e9 * bytes / link.profile.bandwidth);
+                departure = wireFree;
+            }
+
+            long arrival = departure + link.sampleDelay();
+
+            if (link.chance(link.profile.loss))
+            {
+                if (!ordered)
+                    return -1;
+
+                arrival += TimeUnit.MICROSECONDS.toNanos((long) (1000 * link.profile.retransmissionTimeout));
+                link.count("retransmitted");
+            }
+
+            // Nothing gets across a partition; a connection holds on to what it has been given until the partition is over.
+            Partition partition = link.partitionAt(arrival);
+
+            if (partition != null)
+            {
+                if (!ordered)
+                    return -1;
+
+                arrival = startTime + partition.end;
+                link.count("held");
+            }
+
+            if (ordered)
+            {
+                arrival = Math.max(arrival, lastArrival);
+                lastArrival = arrival;
+            }
+
+            return arrival;
+        }
+    }
+
+    private abstract class Link
+    {
+        protected final int listenPort;
+        protected final String target;
+        protected final Profile profile;
+        protected final List<Partition> partitions = new ArrayList<>();
+        private final Map<String, Long> counters = Collections.synchronizedMap(new TreeMap<>());
+
+        public Link(int listenPort, String target, Profile profile)
+        {
+            this.listenPort = listenPort;
+            this.target = target;
+            this.profile = profile;
+        }
+
+        public abstract void open() throws IOException;
+
+        // The link's delay and jitter, in nanoseconds.
+        public long sampleDelay()
+        {
+            double jitter;
+
+            synchronized (random)
+            {
+                switch (profile.distribution)
+                {
+                    case "uniform": jitter = 2 * profile.jitter * random.nextDouble(); break;
+                    case "normal": jitter = Math.max(-profile.delay, profile.jitter * random.nextGaussian()); break;
+                    case "constant": jitter = profile.jitter; break;
+                    default: jitter = -profile.jitter * Math.log(1 - random.nextDouble()); break;
+                }
+            }
+
+            return (long) (1e6 * (profile.delay + jitter));
+        }
+
+        public boolean chance(double probability)
+        {
+            if (probability <= 0)
+                return false;
+
+            synchronized (random)
+            {
+                return random.nextDouble() < probability;
+            }
+        }
+
+        public Partition partitionAt(long time)
+        {
+            for (Partition partition : partitions)
+            {
+                if (time - startTime >= partition.start && time - startTime < partition.end)
+                    return partition;
+            }
+
+            return null;
+        }
+
+        public void count(String counter)
+        {
+            count(counter, 1);
+        }
+
+        public void count(String counter, long amount)
+        {
+            counters.merge(counter, amount, Long::sum);
+        }
+
+        public String describeStats()
+        {
+            synchronized (counters)
+            {
+                StringBuilder stats = new StringBuilder().append(listenPort).append(" -> ").append(target);
+                counters.forEach((counter, value) -> stats.append(" ").append(counter).append("=").append(value));
+
+                return stats.toString();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName() + " " + listenPort + " -> " + target + ": " + profile + ", " + partitions.size() + " partitions";
+        }
+    }
+
+    private class TcpLink extends Link
+    {
+        private final Set<Connection> connections = Collections.synchronizedSet(new HashSet<>());
+
+        public TcpLink(int listenPort, String target, Profile profile)
+        {
+            super(listenPort, target, profile);
+        }
+
+        @Override
+        public void open() throws IOException
+        {
+            ServerSocket serverSocket = new ServerSocket(listenPort, 50, InetAddress.getLoopbackAddress());
+
+            Thread acceptThread = new Thread(() -> {
+                while (!serverSocket.isClosed())
+                {
+                    try
+                    {
+                        Socket client = serverSocket.accept();
+
+                        // A connection attempted during a partition is reset straight away.
+                        if (partitionAt(System.nanoTime()) != null)
+                        {
+                            count("refused");
+                            reset(client);
+                            continue;
+                        }
+
+                        // Connecting upstream can take a while, so it is done on a thread of its own, not holding up the next accept.
+                        Thread connectThread = new Thread(() -> connect(client));
+                        connectThread.setDaemon(true);
+                        connectThread.start();
+                    }
+                    catch (IOException ex)
+                    {
+                        count("failedAccepts");
+                    }
+                }
+            });
+
+            acceptThread.start();
+
+            // Reset every connection a resetting partition cuts, at the time it starts.
+            for (Partition partition : partitions)
+            {
+                if (!partition.reset)
+                    continue;
+
+                Thread partitionThread = new Thread(() -> {
+                    try
+                    {
+                        sleepUntil(startTime + partition.start);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        return;
+                    }
+
+                    List<Connection> cut;
+
+                    synchronized (connections)
+                    {
+                        cut = new ArrayList<>(connections);
+                    }
+
+                    cut.forEach(Connection::reset);
+                });
+
+                partitionThread.setDaemon(true);
+                partitionThread.start();
+            }
+        }
+
+        // The client's connection has already been accepted, so a target that is not listening yet (a participant still starting up,
+        // say) is retried for a while, as the client would have retried it. If it never answers, the client's connection is reset rather
+        // than left open into a dead end.
+        private void connect(Socket client)
+        {
+            long deadline = System.currentTimeMillis() + profile.connectTimeout;
+            Backoff backoff = new Backoff(10, 200);
+
+            while (true)
+            {
+                try
+                {
+                    Socket server = new Socket(Address.host(target), Address.port(target));
+                    Connection connection = new Connection(client, server);
+
+                    connections.add(connection);
+                    count("connections");
+                    connection.start();
+                    return;
+                }
+                catch (ConnectException ex)
+                {
+                    if (System.currentTimeMillis() >= deadline)
+                        break;
+
+                    try
+                    {
+                        backoff.sleep();
+                    }
+                    catch (InterruptedException interrupted)
+                    {
+                        break;
+                    }
+                }
+                catch (IOException ex)
+                {
+                    break;
+                }
+            }
+
+            count("failedConnections");
+            reset(client);
+        }
+
+        private void reset(Socket socket)
+        {
+            try
+            {
+                socket.setSoLinger(true, 0);
+                socket.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+        }
+
+        // Both ways along one forwarded connection, each with a thread reading as fast as the data comes, and a thread writing it out
+        // once it is due, so that a delay slows every chunk down without holding up the ones behind it.
+        private class Connection
+        {
+            private final Socket client;
+            private final Socket server;
+            private int openDirections = 2;
+
+            public Connection(Socket client, Socket server)
+            {
+                this.client = client;
+                this.server = server;
+            }
+
+            public void start() throws IOException
+            {
+                forward(client, server, "bytesIn");
+                forward(server, client, "bytesOut");
+            }
+
+            private void forward(Socket from, Socket to, String counter) throws IOException
+            {
+                InputStream in = from.getInputStream();
+                OutputStream out = to.getOutputStream();
+                Direction direction = new Direction();
+                BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+
+                Thread readThread = new Thread(() -> {
+                    byte[] buffer = new byte[8192];
+                    int length;
+
+                    try
+                    {
+                        while ((length = in.read(buffer)) >= 0)
+                        {
+                            if (chance(profile.reset))
+                            {
+                                count("resets");
+                                reset();
+                                break;
+                            }
+
+                            chunks.add(new Chunk(Arrays.copyOf(buffer, length), direction.arrival(TcpLink.this, length, true)));
+                        }
+                    }
+                    catch (IOException ignored)
+                    {
+                    }
+
+                    chunks.add(new Chunk(null, direction.arrival(TcpLink.this, 0, true)));
+                });
+
+                Thread writeThread = new Thread(() -> {
+                    try
+                    {
+                        while (true)
+                        {
+                            Chunk chunk = chunks.take();
+                            sleepUntil(chunk.arrival);
+
+                            if (chunk.data == null)
+                                break;
+
+                            out.write(chunk.data);
+                            out.flush();
+                            count(counter, chunk.data.length);
+                        }
+
+                        to.shutdownOutput();
+                    }
+                    catch (IOException | InterruptedException ignored)
+                    {
+                    }
+
+                    finished();
+                });
+
+                readThread.start();
+                writeThread.start();
+            }
+
+            // Once neither way has anything left to forward, the connection is done with.
+            private void finished()
+            {
+                synchronized (this)
+                {
+                    if (--openDirections > 0)
+                        return;
+                }
+
+                close();
+            }
+
+            public void reset()
+            {
+                TcpLink.this.reset(client);
+                TcpLink.this.reset(server);
+                connections.remove(this);
+            }
+
+            private void close()
+            {
+                try
+                {
+                    client.close();
+                    server.close();
+                }
+                catch (IOException ignored)
+                {
+                }
+
+                connections.remove(this);
+            }
+        }
+    }
+
+    private static class Chunk
+    {
+        private final byte[] data;
+        private final long arrival;
+
+        public Chunk(byte[] data, long arrival)
+        {
+            this.data = data;
+            this.arrival = arrival;
+        }
+    }
+
+    // Datagrams from each client go out of a socket of their own, so that the replies to them (such as the logger's ACKs) find their
+    // way back to the right client. Datagrams may be lost or overtake each other, and a partition loses everything sent across it.
+    private class UdpLink extends Link
+    {
+        private final Map<SocketAddress, DatagramSocket> relays = new ConcurrentHashMap<>();
+        private final Map<SocketAddress, String> lastPayloads = new ConcurrentHashMap<>();
+        private final ScheduledExecutorService deliveryService = Executors.newSingleThreadScheduledExecutor();
+        private final Direction inbound = new Direction();
+        private final Direction outbound = new Direction();
+        private DatagramSocket socket;
+
+        public UdpLink(int listenPort, String target, Profile profile)
+        {
+            super(listenPort, target, profile);
+        }
+
+        @Override
+        public void open() throws IOException
+        {
+            // UDPLoggerClients send to the local host's own address rather than loopback, so listen on every address.
+            socket = new DatagramSocket(listenPort);
+            InetSocketAddress targetAddress = new InetSocketAddress(Address.host(target), Address.port(target));
+
+            Thread receiveThread = new Thread(() -> {
+                byte[] buffer = new byte[65536];
+
+                while (true)
+                {
+                    try
+                    {
+                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                        socket.receive(packet);
+
+                        SocketAddress client = packet.getSocketAddress();
+                        byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
+
+                        // The same datagram again from the same client is a retry, after a lost message or ACK.
+                        String payload = new String(data);
+
+                        if (payload.equals(lastPayloads.put(client, payload)))
+                            count("retries");
+
+                        DatagramSocket relay = relays.computeIfAbsent(client, this::openRelay);
+
+                        if (relay != null)
+                            deliver(relay, new DatagramPacket(data, data.length, targetAddress), inbound, "datagramsIn");
+                    }
+                    catch (IOException ex)
+                    {
+                        ex.printStackTrace();
+                    }
+                }
+            });
+
+            receiveThread.start();
+        }
+
+        private DatagramSocket openRelay(SocketAddress client)
+        {
+            try
+            {
+                DatagramSocket relay = new DatagramSocket();
+
+                Thread replyThread = new Thread(() -> {
+                    byte[] buffer = new byte[65536];
+
+                    while (true)
+                    {
+                        try
+                        {
+                            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                            relay.receive(packet);
+
+                            byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
+                            deliver(socket, new DatagramPacket(data, data.length, client), outbound, "datagramsOut");
+                        }
+                        catch (IOException ex)
+                        {
+                            return;
+                        }
+                    }
+                });
+
+                replyThread.setDaemon(true);
+                replyThread.start();
+                count("clients");
+
+                return relay;
+            }
+            catch (SocketException ex)
+            {
+                ex.printStackTrace();
+                return null;
+            }
+        }
+
+        private void deliver(DatagramSocket from, DatagramPacket packet, Direction direction, String counter)
+        {
+            long arrival = direction.arrival(this, packet.getLength(), false);
+
+            if (arrival < 0)
+            {
+                count("dropped");
+                return;
+            }
+
+            deliveryService.schedule(() -> {
+                try
+                {
+                    from.send(packet);
+                    count(counter);
+                }
+                catch (IOException ex)
+                {
+                    ex.printStackTrace();
+                }
+            }, arrival - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
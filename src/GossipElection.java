@@ -0,0 +1,229 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+public class GossipElection extends Election
+{
+    private final int fanout;
+    private final boolean pull;
+
+    private final List<String> livePeers;
+    private final Map<String, PrintStream> outputConnections = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, Set<String>> sentVotes = Collections.synchronizedMap(new HashMap<>());
+
+    private final Random random = new Random();
+
+    public GossipElection(String participant, List<String> otherParticipants, List<String> voteOptions, ParticipantLogger logger, int timeout,
+                          int fanout, double probability, boolean pull)
+    {
+        super(participant, otherParticipants, voteOptions, logger, timeout,
+                numberOfRounds(otherParticipants.size() + 1, fanout, probability));
+
+        this.fanout = Math.max(1, fanout);
+        this.pull = pull;
+        this.livePeers = Collections.synchronizedList(new ArrayList<>(otherParticipants));
+    }
+
+    // Push gossip with fanout f reaches half of n participants in about log_(f+1)(n) rounds. After that a participant that is
+    // still missing a vote stays uninformed each round with probability of roughly e^-f, so a further (ln(n) + ln(1 / (1 - p))) / f
+    // rounds bound the chance that any participant misses any vote by 1 - p.
+    public static int numberOfRounds(int participants, int fanout, double probability)
+    {
+        if (participants <= 1)
+            return 1;
+
+        int f = Math.max(1, fanout);
+        double spreadRounds = Math.log(participants) / Math.log(f + 1);
+        double completionRounds = (Math.log(participants) + Math.log(1 / (1 - probability))) / f;
+
+        return Math.max(1, (int) Math.ceil(spreadRounds + completionRounds));
+    }
+
+    @Override
+    protected void establishConnections(List<String> otherParticipants)
+    {
+        // Connections are opened lazily to whichever peers are picked each round, so only start accepting here.
+        acceptConnections(socket -> receiveVotes(socket, null, pull));
+    }
+
+    @Override
+    public void startRound(int roundNumber)
+    {
+        logger.beginRound(roundNumber);
+
+        long roundStart = System.currentTimeMillis();
+
+        List<Callable<Boolean>> pushes = new ArrayList<>();
+        List<String> targets = selectTargets();
+
+        for (String target : targets)
+        {
+            pushes.add(() -> pushVotes(target));
+        }
+
+        try
+        {
+            // Connecting blocks (and retries until the timeout), so push from the receive threads rather than the shared work-stealing pool.
+            List<Future<Boolean>> futurePushes = receiveService.invokeAll(pushes, timeout, TimeUnit.MILLISECONDS);
+
+            for (int i = 0; i < targets.size(); i++)
+            {
+                boolean delivered;
+
+                try
+                {
+                    delivered = futurePushes.get(i).get();
+                }
+                catch (CancellationException | ExecutionException ex)
+                {
+                    delivered = false;
+                }
+
+                if (!delivered)
+                    peerCrashed(targets.get(i));
+            }
+
+            // Give the pushes made by other participants this round the rest of the round to arrive before the next one.
+            long remaining = getRoundDeadline(roundNumber, roundStart) - System.currentTimeMillis();
+
+            if (remaining > 0)
+                Thread.sleep(remaining);
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        logger.endRound(roundNumber);
+    }
+
+    @Override
+    protected long getRoundDelay(int roundNumber)
+    {
+        // Each round already waits out the timeout for in-flight pushes itself.
+        return isScheduled() ? super.getRoundDelay(roundNumber) : 0;
+    }
+
+    private List<String> selectTargets()
+    {
+        List<String> candidates;
+
+        synchronized (livePeers)
+        {
+            candidates = new ArrayList<>(livePeers);
+        }
+
+        Collections.shuffle(candidates, random);
+
+        return new ArrayList<>(candidates.subList(0, Math.min(fanout, candidates.size())));
+    }
+
+    private boolean pushVotes(String peer) throws IOException
+    {
+        PrintStream out = outputConnections.get(peer);
+
+        if (out == null)
+        {
+            Socket socket = connect(peer);
+
+            if (socket == null)
+                return false;
+
+            out = new TracingPrintStream(socket.getOutputStream());
+            outputConnections.put(peer, out);
+
+            // Our own vote has to lead the first message on this connection, even if it already went to the peer in a pull reply.
+            sentVotes.getOrDefault(peer, new HashSet<>()).remove(participant);
+
+            // When pulling, the peer answers on the same connection with the votes it holds that this participant lacks.
+            if (pull)
+                receiveService.submit(() -> receiveVotes(socket, peer, false));
+        }
+
+        sendVotes(peer, out, Collections.emptySet(), true);
+
+        return !out.checkError();
+    }
+
+    // Send every collected vote that has not already been sent to this peer (or that the peer was just seen to hold). Our own vote
+    // always leads the first message on a connection, which is how the receiver identifies the sender.
+    private void sendVotes(String peer, PrintStream out, Set<String> heldByPeer, boolean sendIfEmpty)
+    {
+        Set<String> sent = sentVotes.computeIfAbsent(peer, e -> Collections.synchronizedSet(new HashSet<>()));
+        List<Vote> votes;
+
+        synchronized (collectedVotes)
+        {
+            votes = collectedVotes.stream()
+                    .filter(vote -> !sent.contains(vote.getParticipant()))
+                    .filter(vote -> !heldByPeer.contains(vote.getParticipant()))
+                    .collect(Collectors.toList());
+        }
+
+        if (votes.isEmpty() && !sendIfEmpty)
+            return;
+
+        StringBuilder message = new StringBuilder("VOTE ");
+
+        for (Vote vote : votes)
+        {
+            message.append(vote.getParticipant()).append(" ")
+                    .append(vote.getVote()).append(" ");
+
+            sent.add(vote.getParticipant());
+        }
+
+        out.println(message.toString().trim());
+        logger.votesSent(peer, votes);
+        logger.messageSent(peer, message.toString().trim());
+    }
+
+    private void receiveVotes(Socket socket, String sender, boolean reply)
+    {
+        MessageParser parser = new MessageParser();
+
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintStream out = reply ? new TracingPrintStream(socket.getOutputStream()) : null;
+            String message;
+
+            while ((message = LamportClock.receive(in.readLine())) != null)
+            {
+                List<Vote> retrievedVotes = parser.parseVotes(message);
+
+                if (sender == null && !retrievedVotes.isEmpty())
+                    sender = retrievedVotes.get(0).getParticipant();
+
+                String source = sender == null ? Address.of(socket) : sender;
+
+                logger.messageReceived(source, message);
+
+                if (!retrievedVotes.isEmpty())
+                    logger.votesReceived(source, retrievedVotes);
+
+                mergeVotes(retrievedVotes);
+
+                if (reply && sender != null)
+                {
+                    sendVotes(sender, out, retrievedVotes.stream().map(Vote::getParticipant).collect(Collectors.toSet()), false);
+                }
+            }
+        }
+        catch (IOException ignored) { }
+    }
+
+    private void peerCrashed(String peer)
+    {
+        if (livePeers.remove(peer))
+        {
+            logger.participantCrashed(peer);
+            outputConnections.remove(peer);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A Lamport clock for this process, for tracing elections after the fact (-Dtrace.enabled=true). Every log record ticks it, every line
+// a TracingPrintStream sends carries it as a leading "@<clock>", and every stamped line received moves it past the sender's. One clock
+// is shared by every participant a process hosts, which still orders each participant's own events as a clock of its own would.
+public final class LamportClock
+{
+    private static final String STAMP = "@";
+    private static final AtomicLong clock = new AtomicLong();
+
+    private LamportClock() { }
+
+    public static long tick()
+    {
+        return clock.incrementAndGet();
+    }
+
+    public static long witness(long time)
+    {
+        return clock.updateAndGet(current -> Math.max(current, time) + 1);
+    }
+
+    public static String stamp(String message)
+    {
+        return Settings.isTraceEnabled() ? STAMP + tick() + " " + message : message;
+    }
+
+    // Take the stamp off a line received, if it has one, leaving the message as it was sent.
+    public static String receive(String line)
+    {
+        if (line == null || !line.startsWith(STAMP))
+            return line;
+
+        int end = line.indexOf(' ');
+
+        if (end < 0)
+            end = line.length();
+
+        witness(Long.parseLong(line.substring(STAMP.length(), end)));
+
+        return end < line.length() ? line.substring(end + 1) : "";
+    }
+
+    // A log record with the time and clock it was made at put after its first token, the process it came from. The time is the JVM's
+    // monotonic clock, which on Linux is the same for every process on a host, unlike the logger's receive time.
+    public static String trace(String record)
+    {
+        if (!Settings.isTraceEnabled())
+            return record;
+
+        int end = record.indexOf(' ');
+
+        if (end < 0)
+            end = record.length();
+
+        return record.substring(0, end) + " t=" + TimeUnit.NANOSECONDS.toMicros(System.nanoTime()) + " lc=" + tick() + record.substring(end);
+    }
+}
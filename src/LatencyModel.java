@@ -0,0 +1,16 @@
+import java.util.Random;
+
+// How long a message takes from one participant to another in a simulation, in microseconds.
+public interface LatencyModel
+{
+    long sample(String from, String to, Random random);
+
+    // A fixed base latency plus exponentially distributed jitter, both given in milliseconds.
+    static LatencyModel create()
+    {
+        double base = Settings.getDouble("simulation.latency", 0.2);
+        double jitter = Settings.getDouble("simulation.jitter", 0.1);
+
+        return (from, to, random) -> (long) (1000 * (base - jitter * Math.log(1 - random.nextDouble())));
+    }
+}
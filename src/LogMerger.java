@@ -0,0 +1,156 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Merges the segments written by several Logger processes into one log, in the order the records were received. Each segment is
+// already in that order, so they are merged as they are read, a record at a time, however large they are. A record a Logger was sent
+// twice (when its ACK was lost) is only kept once, which for traced records is known for certain from its process and clock. A resend
+// follows within a few timeouts of the first copy, so only the records received within -Dmerge.window ms of the one being merged are
+// remembered, and merging a long run takes no more memory than a short one. Untraced records carry nothing that tells a resend from
+// a second record with the same text, so their duplicates are all kept.
+//
+// Usage: LogMerger <output file> <segment...>
+public class LogMerger
+{
+    private static final Pattern RECORD = Pattern.compile("^(\\S+) (\\d+) (?:t=(\\d+) lc=(\\d+) )?");
+
+    public static void main(String[] args)
+    {
+        List<Path> segments = new ArrayList<>();
+
+        for (int i = 1; i < args.length; i++) { segments.add(Paths.get(args[i])); }
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(args[0]))))
+        {
+            int merged = merge(segments, out);
+            System.out.println("Merged " + merged + " records from " + segments.size() + " segments into " + args[0]);
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Could not merge the logs: " + ex.getMessage());
+        }
+    }
+
+    public static int merge(List<Path> segments, PrintWriter out) throws IOException
+    {
+        PriorityQueue<Segment> queue = new PriorityQueue<>();
+        long window = Settings.getLong("merge.window", 60000);
+        int merged = 0;
+
+        // The keys of the traced records merged within the window, oldest first, with the times they were received.
+        Map<String, Long> seen = new HashMap<>();
+        Deque<String> seenOrder = new ArrayDeque<>();
+
+        try
+        {
+            for (int i = 0; i < segments.size(); i++)
+            {
+                Segment segment = new Segment(segments.get(i), i);
+
+                if (segment.advance())
+                    queue.add(segment);
+            }
+
+            Segment segment;
+
+            while ((segment = queue.poll()) != null)
+            {
+                while (!seenOrder.isEmpty() && seen.get(seenOrder.peekFirst()) < segment.received - window)
+                {
+                    seen.remove(seenOrder.pollFirst());
+                }
+
+                if (segment.key == null || !seen.containsKey(segment.key))
+                {
+                    if (segment.key != null)
+                    {
+                        seen.put(segment.key, segment.received);
+                        seenOrder.addLast(segment.key);
+                    }
+
+                    out.println(segment.line);
+                    merged++;
+                }
+
+                if (segment.advance())
+                    queue.add(segment);
+                else
+                    segment.close();
+            }
+        }
+        finally
+        {
+            queue.forEach(Segment::close);
+        }
+
+        return merged;
+    }
+
+    // The next record of one segment, ordered by the time the Logger received it, then by the monotonic time it was made at if traced,
+    // and otherwise by the order the segments were given in.
+    private static class Segment implements Comparable<Segment>
+    {
+        private final BufferedReader reader;
+        private final int index;
+
+        private String line;
+        private long received;
+        private long made;
+        private String key;
+
+        public Segment(Path path, int index) throws IOException
+        {
+            this.reader = Files.newBufferedReader(path);
+            this.index = index;
+        }
+
+        // A line without a time stays where it was, after the record before it.
+        public boolean advance() throws IOException
+        {
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.trim().isEmpty())
+                    continue;
+
+                Matcher record = RECORD.matcher(line);
+                key = null;
+
+                if (record.find())
+                {
+                    received = Long.parseLong(record.group(2));
+                    made = record.group(3) == null ? 0 : Long.parseLong(record.group(3));
+                    key = record.group(4) == null ? null : record.group(1) + " " + record.group(4);
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+
+        public void close()
+        {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+        }
+
+        @Override
+        public int compareTo(Segment other)
+        {
+            if (received != other.received)
+                return Long.compare(received, other.received);
+
+            if (made != other.made)
+                return Long.compare(made, other.made);
+
+            return Integer.compare(index, other.index);
+        }
+    }
+}
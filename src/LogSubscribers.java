@@ -0,0 +1,262 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// The records a UDPLoggerServer has recently written, kept in a ring in memory, and pushed to local TCP subscribers as they are
+// written, so that watching an election does not mean re-reading the log file. A subscriber connects and sends one line,
+//
+//   SUBSCRIBE [process=<id>,...] [type=<type>,...] [history=<records>]
+//
+// naming the processes (C, or a participant's host:port ID) and the types of record it wants (join, details, options, round, votes, outcome,
+// crash, connection or message), both all by default, and how many of the recent records it wants to be sent first (all the ring
+// has, by default). Each subscriber has a bounded queue of its own, with room for its history on top; one that falls so far behind that
+// its queue fills is disconnected, rather than holding up the logger.
+public class LogSubscribers
+{
+    private final String[] ring;
+    private int next = 0;
+    private int size = 0;
+
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final int queueSize;
+
+    public LogSubscribers(int ringSize, int queueSize)
+    {
+        this.ring = new String[Math.max(1, ringSize)];
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    // Accept subscribers on the local TCP port, on a thread of its own.
+    public void listen(int port)
+    {
+        ServerSocket serverSocket;
+
+        try
+        {
+            serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            return;
+        }
+
+        Thread acceptThread = new Thread(() -> {
+            while (!serverSocket.isClosed())
+            {
+                try
+                {
+                    Socket socket = serverSocket.accept();
+                    Thread subscribeThread = new Thread(() -> subscribe(socket));
+
+                    subscribeThread.setDaemon(true);
+                    subscribeThread.start();
+                }
+                catch (IOException ex)
+                {
+                    ex.printStackTrace();
+                }
+            }
+        });
+
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    // Called as each record is written. It never waits on a subscriber.
+    public synchronized void publish(String record)
+    {
+        ring[next] = record;
+        next = (next + 1) % ring.length;
+        size = Math.min(size + 1, ring.length);
+
+        Iterator<Subscriber> iterator = subscribers.iterator();
+
+        while (iterator.hasNext())
+        {
+            Subscriber subscriber = iterator.next();
+
+            if (subscriber.matches(record) && !subscriber.records.offer(record))
+            {
+                iterator.remove();
+                subscriber.drop();
+            }
+        }
+    }
+
+    private void subscribe(Socket socket)
+    {
+        Subscriber subscriber;
+
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            subscriber = new Subscriber(socket, in.readLine());
+        }
+        catch (IOException | IllegalArgumentException ex)
+        {
+            try
+            {
+                PrintStream out = new PrintStream(socket.getOutputStream());
+                out.println("ERROR " + ex.getMessage());
+                socket.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+
+            return;
+        }
+
+        // Register and take the history together, so that no record is missed or sent twice in between.
+        synchronized (this)
+        {
+            Deque<String> history = new ArrayDeque<>();
+
+            for (int i = 1; i <= size && history.size() < subscriber.history; i++)
+            {
+                String record = ring[(next - i + ring.length) % ring.length];
+
+                if (subscriber.matches(record))
+                    history.addFirst(record);
+            }
+
+            history.forEach(subscriber.records::offer);
+
+            subscribers.add(subscriber);
+        }
+
+        subscriber.forward();
+    }
+
+    // The type of a record, from the text the loggers write for each kind of event.
+    public static String getType(String record)
+    {
+        if (record.contains(" message sent to ") || record.contains(" message received from "))
+            return "message";
+        if (record.contains("JOIN "))
+            return "join";
+        if (record.contains(" details sent to ") || record.contains(" received participant ports"))
+            return "details";
+        if (record.contains("vote options"))
+            return "options";
+        if (record.contains(" begin round ") || record.contains(" end round "))
+            return "round";
+        if (record.contains(" votes sent to ") || record.contains(" votes received from "))
+            return "votes";
+        if (record.contains(" outcome ") || record.contains(" election complete"))
+            return "outcome";
+        if (record.contains(" crashed: "))
+            return "crash";
+        if (record.contains(" connection ") || record.contains(" started listening "))
+            return "connection";
+
+        return "other";
+    }
+
+    private class Subscriber
+    {
+        private final Socket socket;
+        private final Thread thread;
+        private final Set<String> processes = new HashSet<>();
+        private final Set<String> types = new HashSet<>();
+        private int history = Integer.MAX_VALUE;
+        private final BlockingQueue<String> records;
+
+        // Made on the thread that goes on to forward its records.
+        public Subscriber(Socket socket, String request)
+        {
+            this.socket = socket;
+            this.thread = Thread.currentThread();
+
+            String[] tokens = request == null ? new String[0] : request.trim().split("\\s+");
+
+            if (tokens.length == 0 || !tokens[0].equals("SUBSCRIBE"))
+                throw new IllegalArgumentException("expected SUBSCRIBE");
+
+            for (int i = 1; i < tokens.length; i++)
+            {
+                String[] filter = tokens[i].split("=", 2);
+
+                if (filter.length < 2)
+                    throw new IllegalArgumentException("expected key=value, not " + tokens[i]);
+
+                switch (filter[0])
+                {
+                    case "process":
+                        // Records are tagged [C] or [<host:port>].
+                        for (String process : filter[1].split(","))
+                        {
+                            processes.add("[" + process + "]");
+                        }
+                        break;
+                    case "type":
+                        types.addAll(Arrays.asList(filter[1].toLowerCase().split(",")));
+                        break;
+                    case "history":
+                        history = Integer.parseInt(filter[1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown filter " + filter[0]);
+                }
+            }
+
+            // The history goes in first, so the queue holds it as well as the usual allowance for falling behind.
+            history = Math.max(0, Math.min(history, ring.length));
+            records = new ArrayBlockingQueue<>(history + queueSize);
+        }
+
+        public boolean matches(String record)
+        {
+            int end = record.indexOf(' ');
+            String process = end < 0 ? record : record.substring(0, end);
+
+            return (processes.isEmpty() || processes.contains(process)) && (types.isEmpty() || types.contains(getType(record)));
+        }
+
+        // Write the records out as they come, flushing whenever the subscriber has caught up.
+        public void forward()
+        {
+            try
+            {
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+
+                while (true)
+                {
+                    String record = records.take();
+
+                    out.write(record);
+                    out.newLine();
+
+                    if (records.isEmpty())
+                        out.flush();
+                }
+            }
+            catch (IOException | InterruptedException ignored)
+            {
+            }
+
+            synchronized (LogSubscribers.this)
+            {
+                subscribers.remove(this);
+            }
+
+            drop();
+        }
+
+        public void drop()
+        {
+            thread.interrupt();
+
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compression for the messages on one connection. Each message long enough to be worth it is deflated and sent as a line of its own,
+// "Z <base64>", flushed so that the other end can inflate it straight away. The deflater keeps its history from one message to the
+// next, so the lists of IDs and votes that each VOTE or DETAILS repeats from the last cost very little. Both ends start from the same
+// preset dictionary, of the message types and whatever words the connection is likely to carry, so even the first message compresses.
+public class MessageCodec
+{
+    private static final String COMPRESSED = "Z ";
+
+    private final byte[] dictionary;
+    private final int threshold;
+
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+    private final byte[] buffer = new byte[4096];
+
+    public MessageCodec(Iterable<String> words)
+    {
+        StringBuilder dictionary = new StringBuilder();
+
+        for (MessageType type : MessageType.values())
+        {
+            dictionary.append(type.name()).append(" ");
+        }
+
+        // The deflater finds the end of the dictionary cheapest to refer back to, so the connection's own words go last.
+        for (String word : words)
+        {
+            dictionary.append(word).append(" ");
+        }
+
+        this.dictionary = dictionary.toString().getBytes(StandardCharsets.UTF_8);
+        this.threshold = Settings.getCompressionThreshold();
+
+        deflater.setDictionary(this.dictionary);
+    }
+
+    public synchronized String encode(String message)
+    {
+        if (message.length() < threshold)
+            return message;
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        deflater.setInput(message.getBytes(StandardCharsets.UTF_8));
+
+        int length;
+
+        do
+        {
+            length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            compressed.write(buffer, 0, length);
+        }
+        while (length == buffer.length);
+
+        return COMPRESSED + Base64.getEncoder().encodeToString(compressed.toByteArray());
+    }
+
+    public synchronized String decode(String line)
+    {
+        if (line == null || !line.startsWith(COMPRESSED))
+            return line;
+
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+        inflater.setInput(Base64.getDecoder().decode(line.substring(COMPRESSED.length())));
+
+        try
+        {
+            while (true)
+            {
+                int length = inflater.inflate(buffer);
+
+                if (length > 0)
+                    message.write(buffer, 0, length);
+                else if (inflater.needsDictionary())
+                    inflater.setDictionary(dictionary);
+                else
+                    break;
+            }
+        }
+        catch (DataFormatException ex)
+        {
+            throw new IllegalArgumentException("Could not inflate a compressed message.", ex);
+        }
+
+        return new String(message.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -1,28 +1,115 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.regex.Pattern;
 
 public class MessageParser
 {
+    // The hash of an option set, as OptionSetCache.hash writes it, which only ever comes first in a VOTE_OPTIONS.
+    private static final Pattern OPTION_SET_HASH = Pattern.compile("#[0-9a-f]{32}");
+
+    // Flags a JOIN from a polling station, and the DETAILS of an election with any polling station in it.
+    public static final String STATIONS = "STATIONS";
+
     private StringTokenizer tokenizer;
 
-    public int parseJoinRequest(String message) throws IllegalArgumentException
+    public String parseJoinRequest(String message) throws IllegalArgumentException
     {
         if (parseMessage(message, MessageType.JOIN))
-            return Integer.parseInt(tokenizer.nextToken());
+            return tokenizer.nextToken();
+        else
+            return null;
+    }
+
+    // Whether the JOIN offers to have the Coordinator's messages compressed, with a COMPRESS after the participant's ID.
+    public boolean parseCompressionOffer(String message) throws IllegalArgumentException
+    {
+        return parseJoinFlags(message).contains(MessageType.COMPRESS.name());
+    }
+
+    // The hashes of the option sets a participant already has, listed after a VOTE_OPTIONS at the end of its JOIN, or null if it does
+    // not cache option sets at all.
+    public List<String> parseCachedOptionSets(String message) throws IllegalArgumentException
+    {
+        List<String> flags = parseJoinFlags(message);
+        int start = flags.indexOf(MessageType.VOTE_OPTIONS.name());
+
+        return start < 0 ? null : new ArrayList<>(flags.subList(start + 1, flags.size()));
+    }
+
+    private List<String> parseJoinFlags(String message)
+    {
+        List<String> flags = new ArrayList<>();
+
+        if (!parseMessage(message, MessageType.JOIN) || !tokenizer.hasMoreTokens())
+            return flags;
+
+        tokenizer.nextToken();
+
+        while (tokenizer.hasMoreTokens())
+        {
+            flags.add(tokenizer.nextToken());
+        }
+
+        return flags;
+    }
+
+    // A VOTE_OPTIONS may start with the hash of the option set, written #<hash>, and then carry either the options or nothing else.
+    public String parseOptionSetHash(String message) throws IllegalArgumentException
+    {
+        if (parseMessage(message, MessageType.VOTE_OPTIONS) && tokenizer.hasMoreTokens())
+        {
+            String hash = tokenizer.nextToken();
+
+            return OPTION_SET_HASH.matcher(hash).matches() ? hash.substring(1) : null;
+        }
+        else
+            return null;
+    }
+
+    // Whether the JOIN comes from a participant standing for a polling station, whose vote carries the counts of many ballots.
+    public boolean parseStationFlag(String message) throws IllegalArgumentException
+    {
+        return parseJoinFlags(message).contains(STATIONS);
+    }
+
+    // Whether the DETAILS say a polling station is taking part, in which case no outcome can be known before every vote is in.
+    public boolean parseStationsPresent(String message) throws IllegalArgumentException
+    {
+        return parseMessage(message, MessageType.DETAILS) && Collections.list(tokenizer).contains(STATIONS);
+    }
+
+    // Sent by a participant that was only sent the hash of an option set it does not have.
+    public String parseOptionsRequest(String message) throws IllegalArgumentException
+    {
+        if (parseMessage(message, MessageType.OPTIONS_REQUEST))
+            return tokenizer.nextToken();
         else
-            return -1;
+            return null;
     }
 
-    public List<Integer> parseDetails(String message) throws IllegalArgumentException
+    // A COMPRESS message carries the ID of the participant sending it.
+    public String parseCompress(String message) throws IllegalArgumentException
+    {
+        if (parseMessage(message, MessageType.COMPRESS) && tokenizer.hasMoreTokens())
+            return tokenizer.nextToken();
+        else
+            return null;
+    }
+
+    public List<String> parseDetails(String message) throws IllegalArgumentException
     {
         if (parseMessage(message, MessageType.DETAILS))
         {
-            List<Integer> participants = new ArrayList<>();
+            List<String> participants = new ArrayList<>();
 
             while (tokenizer.hasMoreTokens())
             {
-                participants.add(Integer.parseInt(tokenizer.nextToken()));
+                String participant = tokenizer.nextToken();
+
+                if (!participant.equals(STATIONS))
+                    participants.add(participant);
             }
 
             return participants;
@@ -42,6 +129,9 @@ public class MessageParser
                 options.add(tokenizer.nextToken());
             }
 
+            if (!options.isEmpty() && OPTION_SET_HASH.matcher(options.get(0)).matches())
+                options.remove(0);
+
             return options;
         }
         else
@@ -56,7 +146,7 @@ public class MessageParser
 
             while (tokenizer.hasMoreTokens())
             {
-                votes.add(new Vote(Integer.parseInt(tokenizer.nextToken()), tokenizer.nextToken()));
+                votes.add(new Vote(tokenizer.nextToken(), tokenizer.nextToken()));
             }
 
             return votes;
@@ -65,19 +155,110 @@ public class MessageParser
             return null;
     }
 
+    public VoteResponse parseMulticastVotes(String message) throws IllegalArgumentException
+    {
+        return parseRoundVotes(message, MessageType.MULTICAST_VOTE);
+    }
+
+    public VoteResponse parseRoundVotes(String message) throws IllegalArgumentException
+    {
+        return parseRoundVotes(message, MessageType.ROUND_VOTE);
+    }
+
+    private VoteResponse parseRoundVotes(String message, MessageType type) throws IllegalArgumentException
+    {
+        if (parseMessage(message, type))
+        {
+            VoteResponse response = new VoteResponse(tokenizer.nextToken());
+            response.setRound(Integer.parseInt(tokenizer.nextToken()));
+
+            List<Vote> votes = new ArrayList<>();
+
+            while (tokenizer.hasMoreTokens())
+            {
+                votes.add(new Vote(tokenizer.nextToken(), tokenizer.nextToken()));
+            }
+
+            response.setVotes(votes);
+
+            return response;
+        }
+        else
+            return null;
+    }
+
+    public VoteResponse parseState(String message) throws IllegalArgumentException
+    {
+        return parseRoundVotes(message, MessageType.STATE);
+    }
+
+    // The requester comes first, followed by the rounds it is missing.
+    public List<String> parseNack(String message) throws IllegalArgumentException
+    {
+        if (parseMessage(message, MessageType.NACK))
+        {
+            List<String> nack = new ArrayList<>();
+
+            while (tokenizer.hasMoreTokens())
+            {
+                nack.add(tokenizer.nextToken());
+            }
+
+            return nack;
+        }
+        else
+            return null;
+    }
+
+    public String parseHeartbeat(String message) throws IllegalArgumentException
+    {
+        if (parseMessage(message, MessageType.HEARTBEAT))
+            return tokenizer.nextToken();
+        else
+            return null;
+    }
+
+    // Both a REJOIN and a STATE_REQUEST carry just the ID of the restarted participant.
+    public String parseRejoin(String message) throws IllegalArgumentException
+    {
+        tokenizer = new StringTokenizer(message);
+
+        MessageType type = MessageType.valueOf(tokenizer.nextToken());
+
+        if (type == MessageType.REJOIN || type == MessageType.STATE_REQUEST)
+            return tokenizer.nextToken();
+        else
+            return null;
+    }
+
+    public List<Long> parseSchedule(String message) throws IllegalArgumentException
+    {
+        if (parseMessage(message, MessageType.SCHEDULE))
+        {
+            List<Long> schedule = new ArrayList<>();
+
+            schedule.add(Long.parseLong(tokenizer.nextToken()));
+            schedule.add(Long.parseLong(tokenizer.nextToken()));
+
+            return schedule;
+        }
+        else
+            return null;
+    }
+
     public Outcome parseOutcome(String message) throws IllegalArgumentException
     {
         if (parseMessage(message, MessageType.OUTCOME))
         {
             String option = tokenizer.nextToken();
 
-            int participant = Integer.parseInt(tokenizer.nextToken());
+            String participant = tokenizer.nextToken();
 
-            List<Integer> otherParticipants = new ArrayList<>();
+            List<String> otherParticipants = new ArrayList<>();
 
             while (tokenizer.hasMoreTokens())
             {
-                otherParticipants.add(Integer.parseInt(tokenizer.nextToken()));
+                otherParticipants.add(tokenizer.nextToken());
             }
 
             return new Outcome(participant, option, otherParticipants);
@@ -86,6 +267,30 @@ public class MessageParser
             return null;
     }
 
+    public Tally parseTally(String message, MessageType type) throws IllegalArgumentException
+    {
+        if (parseMessage(message, type))
+        {
+            Tally tally = new Tally();
+
+            int numberOfOptions = Integer.parseInt(tokenizer.nextToken());
+
+            for (int i = 0; i < numberOfOptions; i++)
+            {
+                tally.addCount(tokenizer.nextToken(), Long.parseLong(tokenizer.nextToken()));
+            }
+
+            while (tokenizer.hasMoreTokens())
+            {
+                tally.addVoter(tokenizer.nextToken());
+            }
+
+            return tally;
+        }
+        else
+            return null;
+    }
+
     private boolean parseMessage(String message, MessageType type)
     {
         tokenizer = new StringTokenizer(message);
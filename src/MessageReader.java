@@ -0,0 +1,192 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Reads every connection handed to it on one thread for the whole process, through a single selector, rather than a blocking thread
+// per connection. A ParticipantHost would otherwise need a reading thread for every peer of every participant it hosts, so that its
+// threads grew with the square of the election. Connections share one read buffer, and each keeps only the part of a line it has read
+// so far. Lines are handed to each connection's handler on the reading thread, so a handler must not block for long.
+public final class MessageReader
+{
+    private static MessageReader reader = null;
+
+    private final Selector selector;
+    private final Queue<Connection> registrations = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+    public interface Handler
+    {
+        void read(String line) throws IOException;
+
+        // Called once, when the connection is closed by the other end or fails.
+        void closed();
+    }
+
+    private MessageReader() throws IOException
+    {
+        this.selector = Selector.open();
+
+        Thread thread = new Thread(this::run, "MessageReader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized MessageReader getReader() throws IOException
+    {
+        if (reader == null)
+            reader = new MessageReader();
+
+        return reader;
+    }
+
+    // The channel is made non-blocking, so from now on it can only be written through outputStream.
+    public void register(SocketChannel channel, Handler handler) throws IOException
+    {
+        channel.configureBlocking(false);
+
+        registrations.add(new Connection(channel, handler));
+        selector.wakeup();
+    }
+
+    // Writes to a non-blocking channel, waiting for room whenever the socket's send buffer is full, as its socket's own stream would.
+    public static OutputStream outputStream(SocketChannel channel)
+    {
+        return new OutputStream()
+        {
+            @Override
+            public void write(int b) throws IOException
+            {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(byte[] bytes, int offset, int length) throws IOException
+            {
+                ByteBuffer data = ByteBuffer.wrap(bytes, offset, length);
+
+                while (data.hasRemaining())
+                {
+                    if (channel.write(data) > 0)
+                        continue;
+
+                    try (Selector writable = Selector.open())
+                    {
+                        channel.register(writable, SelectionKey.OP_WRITE);
+                        writable.select();
+                    }
+                }
+            }
+        };
+    }
+
+    private void run()
+    {
+        while (selector.isOpen())
+        {
+            try
+            {
+                selector.select();
+            }
+            catch (IOException ex)
+            {
+                ex.printStackTrace();
+                return;
+            }
+
+            Connection registration;
+
+            while ((registration = registrations.poll()) != null)
+            {
+                try
+                {
+                    registration.channel.register(selector, SelectionKey.OP_READ, registration);
+                }
+                catch (ClosedChannelException ex)
+                {
+                    registration.handler.closed();
+                }
+            }
+
+            for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext(); )
+            {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                Connection connection = (Connection) key.attachment();
+
+                try
+                {
+                    if (!connection.read())
+                        close(key, connection);
+                }
+                catch (IOException | RuntimeException ex)
+                {
+                    close(key, connection);
+                }
+            }
+        }
+    }
+
+    private void close(SelectionKey key, Connection connection)
+    {
+        key.cancel();
+
+        try
+        {
+            connection.channel.close();
+        }
+        catch (IOException ignored) { }
+
+        connection.handler.closed();
+    }
+
+    private class Connection
+    {
+        private final SocketChannel channel;
+        private final Handler handler;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        public Connection(SocketChannel channel, Handler handler)
+        {
+            this.channel = channel;
+            this.handler = handler;
+        }
+
+        // Hands over every line completed by what has arrived, returning false once the other end has closed the connection.
+        public boolean read() throws IOException
+        {
+            buffer.clear();
+
+            int read = channel.read(buffer);
+
+            if (read < 0)
+                return false;
+
+            buffer.flip();
+
+            while (buffer.hasRemaining())
+            {
+                byte b = buffer.get();
+
+                if (b != '\n')
+                {
+                    line.write(b);
+                    continue;
+                }
+
+                // Lines end as BufferedReader.readLine ends them, on \n or \r\n, and are decoded as it decodes them.
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                line.reset();
+
+                handler.read(new String(bytes, 0, length, Charset.defaultCharset()));
+            }
+
+            return true;
+        }
+    }
+}
@@ -1,8 +1,22 @@
 public enum MessageType
 {
     JOIN,
+    // DETAILS <participant> ... [STATIONS] lists every participant in the election, the recipient included, so that the same message
+    // can be encoded once and sent to all of them; each skips its own ID. STATIONS is added when any of them is a polling station.
     DETAILS,
     VOTE_OPTIONS,
     VOTE,
-    OUTCOME
+    OUTCOME,
+    TALLY,
+    TALLY_RESULT,
+    MULTICAST_VOTE,
+    NACK,
+    HEARTBEAT,
+    SCHEDULE,
+    ROUND_VOTE,
+    REJOIN,
+    STATE_REQUEST,
+    STATE,
+    COMPRESS,
+    OPTIONS_REQUEST
 }
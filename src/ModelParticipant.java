@@ -0,0 +1,232 @@
+import java.util.*;
+
+// One participant of a full-mesh election, run in virtual time by a ProtocolModel. It restates the rounds of Election: each round
+// it sends the votes it learnt in the last round to every participant it is still connected to, and takes one VOTE per connection,
+// treating any participant with nothing for it by the end of the round (or whose connection has closed) as crashed.
+public class ModelParticipant
+{
+    // Stands in for a closed connection in a participant's inbox, as CONNECTION_CLOSED does in Election.
+    public static final List<Vote> CLOSED = Collections.emptyList();
+
+    private final String participant;
+    private final ProtocolModel model;
+    private final Simulation simulation;
+    private final int numberOfRounds;
+
+    // Votes are only tallied once the election is over, so that the many elections of a simulation do not pay for keeping a Tally up to
+    // date. The connections keep the order of the DETAILS, so that every run sends in the same order.
+    private final Map<String, Vote> collectedVotes = new HashMap<>();
+    private List<Vote> newVotes = new ArrayList<>();
+
+    private final Set<String> outputConnections = new LinkedHashSet<>();
+    private final Set<String> inputConnections = new LinkedHashSet<>();
+    private final Map<String, Deque<List<Vote>>> inbox = new HashMap<>();
+    private final Map<String, Long> lastArrivals = new HashMap<>();
+
+    private int round = 0;
+    private boolean inRound = false;
+    private int awaiting = 0;
+    private long scheduleStart;
+
+    private long crashTime = Long.MAX_VALUE;
+    private String outcome;
+    private long decidedAt = -1;
+    private int crashesDetected = 0;
+    private int falseCrashes = 0;
+
+    public ModelParticipant(String participant, List<String> otherParticipants, Vote vote, ProtocolModel model)
+    {
+        this.participant = participant;
+        this.model = model;
+        this.simulation = model.getSimulation();
+        this.numberOfRounds = otherParticipants.size();
+
+        outputConnections.addAll(otherParticipants);
+        inputConnections.addAll(otherParticipants);
+        otherParticipants.forEach(otherParticipant -> inbox.put(otherParticipant, new ArrayDeque<>()));
+
+        collectedVotes.put(participant, vote);
+        newVotes.add(vote);
+    }
+
+    // Called once the DETAILS and VOTE_OPTIONS have arrived.
+    public void start()
+    {
+        scheduleStart = simulation.now() + model.getRoundDelay();
+
+        if (numberOfRounds == 0)
+            decide();
+        else
+            simulation.schedule(model.getRoundDelay(), () -> startRound(1));
+    }
+
+    private void startRound(int roundNumber)
+    {
+        if (isCrashed())
+            return;
+
+        round = roundNumber;
+        inRound = true;
+
+        // Messages go out one after another, as Election writes them, so a crash part way through reaches only some participants.
+        long departure = simulation.now();
+        List<Vote> votes = new ArrayList<>(newVotes);
+
+        for (String otherParticipant : outputConnections)
+        {
+            model.send(participant, otherParticipant, votes, departure);
+            departure += model.getSendCost();
+        }
+
+        awaiting = 0;
+
+        for (String otherParticipant : inputConnections)
+        {
+            if (inbox.get(otherParticipant).isEmpty())
+                awaiting++;
+        }
+
+        if (awaiting == 0)
+            endRound();
+        else
+            simulation.scheduleAt(getRoundDeadline(roundNumber), () -> {
+                if (round == roundNumber && inRound)
+                    endRound();
+            });
+    }
+
+    private long getRoundDeadline(int roundNumber)
+    {
+        if (model.isScheduled())
+            return scheduleStart + roundNumber * model.getRoundLength();
+
+        return simulation.now() + model.getTimeout();
+    }
+
+    public void receive(String sender, List<Vote> votes)
+    {
+        if (isCrashed() || !inputConnections.contains(sender))
+            return;
+
+        Deque<List<Vote>> messages = inbox.get(sender);
+        messages.add(votes);
+
+        // The round is over as soon as the last connection it was waiting on has delivered.
+        if (inRound && messages.size() == 1 && --awaiting == 0)
+            endRound();
+    }
+
+    private void endRound()
+    {
+        inRound = false;
+
+        List<Vote> roundVotes = new ArrayList<>();
+        List<String> crashedParticipants = new ArrayList<>();
+
+        for (String otherParticipant : inputConnections)
+        {
+            List<Vote> votes = inbox.get(otherParticipant).poll();
+
+            if (votes == null || votes == CLOSED)
+            {
+                crashedParticipants.add(otherParticipant);
+                continue;
+            }
+
+            for (Vote vote : votes)
+            {
+                if (collectedVotes.putIfAbsent(vote.getParticipant(), vote) == null)
+                    roundVotes.add(vote);
+            }
+        }
+
+        for (String crashedParticipant : crashedParticipants)
+        {
+            crashesDetected++;
+
+            if (!model.hasCrashed(crashedParticipant))
+                falseCrashes++;
+
+            inputConnections.remove(crashedParticipant);
+            outputConnections.remove(crashedParticipant);
+        }
+
+        newVotes = roundVotes;
+
+        if (round == numberOfRounds)
+            decide();
+        else if (model.isScheduled())
+            simulation.scheduleAt(scheduleStart + round * model.getRoundLength(), () -> startRound(round + 1));
+        else
+            simulation.schedule(model.getRoundDelay(), () -> startRound(round + 1));
+    }
+
+    private void decide()
+    {
+        Tally tally = new Tally();
+        collectedVotes.values().forEach(tally::add);
+
+        outcome = tally.getLeader();
+        decidedAt = simulation.now();
+    }
+
+    public void crash()
+    {
+        crashTime = simulation.now();
+        inRound = false;
+
+        outputConnections.forEach(otherParticipant -> model.send(participant, otherParticipant, CLOSED, crashTime));
+    }
+
+    public boolean isCrashed()
+    {
+        return simulation.now() >= crashTime;
+    }
+
+    public long getCrashTime()
+    {
+        return crashTime;
+    }
+
+    public String getParticipant()
+    {
+        return participant;
+    }
+
+    public String getOutcome()
+    {
+        return outcome;
+    }
+
+    public long getDecidedAt()
+    {
+        return decidedAt;
+    }
+
+    public List<String> getVoters()
+    {
+        List<String> voters = new ArrayList<>(collectedVotes.keySet());
+        voters.sort(Address.ORDER);
+
+        return voters;
+    }
+
+    // Messages on one connection arrive in the order they were sent, as over TCP, so none can arrive before the last one did.
+    public long arrivalAfter(String receiver, long arrival)
+    {
+        long orderedArrival = Math.max(arrival, lastArrivals.getOrDefault(receiver, 0L));
+        lastArrivals.put(receiver, orderedArrival);
+
+        return orderedArrival;
+    }
+
+    public int getCrashesDetected()
+    {
+        return crashesDetected;
+    }
+
+    public int getFalseCrashes()
+    {
+        return falseCrashes;
+    }
+}
@@ -0,0 +1,330 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Broadcasts each round's votes as a single UDP multicast datagram tagged with the sender and round number, instead of one TCP write
+// per peer. Missed datagrams are requested again with a NACK over the TCP mesh, which the sender answers by retransmitting the same
+// message over TCP. A peer is still only treated as crashed if neither its datagram nor a repair turns up for a round.
+public class MulticastElection extends Election
+{
+    private final InetSocketAddress group;
+    private final NetworkInterface networkInterface;
+    private final MulticastSocket multicastSocket;
+
+    private final List<String> livePeers;
+    private final Map<String, PrintStream> outputConnections = Collections.synchronizedMap(new HashMap<>());
+
+    private final Map<Integer, String> sentMessages = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> receivedRounds = new HashMap<>();
+    private final List<Vote> pendingVotes = Collections.synchronizedList(new ArrayList<>());
+
+    public MulticastElection(String participant, List<String> otherParticipants, List<String> voteOptions, ParticipantLogger logger, int timeout,
+                             String group, int port, String interfaceName, int timeToLive) throws IOException
+    {
+        super(participant, otherParticipants, voteOptions, logger, timeout);
+
+        this.group = new InetSocketAddress(InetAddress.getByName(group), port);
+        this.networkInterface = interfaceName == null ? null : NetworkInterface.getByName(interfaceName);
+        this.livePeers = Collections.synchronizedList(new ArrayList<>(otherParticipants));
+
+        multicastSocket = new MulticastSocket(port);
+        multicastSocket.setTimeToLive(timeToLive);
+        multicastSocket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+
+        if (networkInterface != null)
+            multicastSocket.setNetworkInterface(networkInterface);
+
+        multicastSocket.joinGroup(this.group, networkInterface);
+
+        pendingVotes.add(collectedVotes.get(0));
+
+        for (String otherParticipant : otherParticipants)
+        {
+            receivedRounds.put(otherParticipant, new HashSet<>());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+
+        try
+        {
+            multicastSocket.leaveGroup(group, networkInterface);
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        multicastSocket.close();
+    }
+
+    @Override
+    protected void establishConnections(List<String> otherParticipants)
+    {
+        receiveService.submit(this::receiveDatagrams);
+        acceptConnections(this::receiveRepairs);
+
+        List<Callable<Boolean>> connections = new ArrayList<>();
+
+        for (String otherParticipant : otherParticipants)
+        {
+            connections.add(() -> {
+                Socket socket = connect(otherParticipant);
+
+                if (socket == null)
+                    return false;
+
+                outputConnections.put(otherParticipant, new TracingPrintStream(socket.getOutputStream()));
+
+                return true;
+            });
+        }
+
+        try
+        {
+            receiveService.invokeAll(connections, timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        for (String otherParticipant : otherParticipants)
+        {
+            if (!outputConnections.containsKey(otherParticipant))
+                peerCrashed(otherParticipant);
+        }
+    }
+
+    @Override
+    public void startRound(int roundNumber)
+    {
+        logger.beginRound(roundNumber);
+
+        List<Vote> votes;
+
+        synchronized (pendingVotes)
+        {
+            votes = new ArrayList<>(pendingVotes);
+            pendingVotes.clear();
+        }
+
+        StringBuilder message = new StringBuilder("MULTICAST_VOTE ");
+        message.append(participant).append(" ").append(roundNumber).append(" ");
+
+        for (Vote vote : votes)
+        {
+            message.append(vote.getParticipant()).append(" ")
+                    .append(vote.getVote()).append(" ");
+        }
+
+        sentMessages.put(roundNumber, message.toString().trim());
+
+        byte[] buffer = LamportClock.stamp(message.toString().trim()).getBytes(StandardCharsets.UTF_8);
+
+        try
+        {
+            multicastSocket.send(new DatagramPacket(buffer, buffer.length, group));
+            logger.messageSent(Address.of(group.getHostString(), group.getPort()), message.toString().trim());
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        try
+        {
+            // On a fixed schedule, the first half of the round is for datagrams and the second half for repairs.
+            long roundStart = System.currentTimeMillis();
+            long roundDeadline = getRoundDeadline(roundNumber, roundStart);
+
+            awaitRound(roundNumber, isScheduled() ? roundStart + (roundDeadline - roundStart) / 2 : roundDeadline);
+
+            // Ask every peer still missing a round to resend it over TCP, then give the repairs one more timeout to arrive.
+            Map<String, List<Integer>> missingRounds = missingRounds(roundNumber);
+
+            if (!missingRounds.isEmpty())
+            {
+                for (Map.Entry<String, List<Integer>> missing : missingRounds.entrySet())
+                {
+                    sendNack(missing.getKey(), missing.getValue());
+                }
+
+                awaitRound(roundNumber, isScheduled() ? roundDeadline : System.currentTimeMillis() + timeout);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        // Any peer that neither multicast nor repaired this round is treated as crashed, as in the full mesh.
+        for (String peer : missingRounds(roundNumber).keySet())
+        {
+            synchronized (receivedRounds)
+            {
+                if (!receivedRounds.get(peer).contains(roundNumber))
+                    peerCrashed(peer);
+            }
+        }
+
+        logger.endRound(roundNumber);
+    }
+
+    private void awaitRound(int roundNumber, long deadline) throws InterruptedException
+    {
+        synchronized (receivedRounds)
+        {
+            while (!missingRounds(roundNumber).isEmpty())
+            {
+                long remaining = deadline - System.currentTimeMillis();
+
+                if (remaining <= 0)
+                    return;
+
+                receivedRounds.wait(remaining);
+            }
+        }
+    }
+
+    private Map<String, List<Integer>> missingRounds(int roundNumber)
+    {
+        Map<String, List<Integer>> missingRounds = new HashMap<>();
+
+        synchronized (receivedRounds)
+        {
+            for (String peer : new ArrayList<>(livePeers))
+            {
+                for (int round = 1; round <= roundNumber; round++)
+                {
+                    if (!receivedRounds.get(peer).contains(round))
+                        missingRounds.computeIfAbsent(peer, e -> new ArrayList<>()).add(round);
+                }
+            }
+        }
+
+        return missingRounds;
+    }
+
+    private void sendNack(String peer, List<Integer> rounds)
+    {
+        PrintStream out = outputConnections.get(peer);
+
+        if (out == null)
+            return;
+
+        StringBuilder message = new StringBuilder("NACK ");
+        message.append(participant).append(" ");
+
+        for (int round : rounds)
+        {
+            message.append(round).append(" ");
+        }
+
+        out.println(message.toString().trim());
+        logger.messageSent(peer, message.toString().trim());
+    }
+
+    private void deliver(String message)
+    {
+        VoteResponse response = new MessageParser().parseMulticastVotes(message);
+        String sender = response.getParticipant();
+
+        synchronized (receivedRounds)
+        {
+            Set<Integer> rounds = receivedRounds.get(sender);
+
+            if (rounds == null || !rounds.add(response.getRound()))
+                return;
+
+            receivedRounds.notifyAll();
+        }
+
+        logger.messageReceived(sender, message);
+
+        if (!response.getVotes().isEmpty())
+            logger.votesReceived(sender, response.getVotes());
+
+        pendingVotes.addAll(mergeVotes(response.getVotes()));
+    }
+
+    private void receiveDatagrams()
+    {
+        byte[] buffer = new byte[65507];
+
+        while (!multicastSocket.isClosed())
+        {
+            try
+            {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                multicastSocket.receive(packet);
+
+                String message = LamportClock.receive(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+
+                if (message.startsWith(MessageType.MULTICAST_VOTE.name()))
+                    deliver(message);
+            }
+            catch (IOException ex)
+            {
+                return;
+            }
+            catch (RuntimeException ignored) { }
+        }
+    }
+
+    // Each TCP connection from a peer carries its NACKs for our rounds, and its repairs of the rounds we asked it for.
+    private void receiveRepairs(Socket socket)
+    {
+        MessageParser parser = new MessageParser();
+
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String message;
+
+            while ((message = LamportClock.receive(in.readLine())) != null)
+            {
+                if (message.startsWith(MessageType.NACK.name()))
+                {
+                    List<String> nack = parser.parseNack(message);
+                    String requester = nack.remove(0);
+
+                    logger.messageReceived(requester, message);
+
+                    PrintStream out = outputConnections.get(requester);
+
+                    for (String round : nack)
+                    {
+                        String repair = sentMessages.get(Integer.parseInt(round));
+
+                        if (out != null && repair != null)
+                        {
+                            out.println(repair);
+                            logger.messageSent(requester, repair);
+                        }
+                    }
+                }
+                else
+                    deliver(message);
+            }
+        }
+        catch (IOException ignored) { }
+    }
+
+    private void peerCrashed(String peer)
+    {
+        if (livePeers.remove(peer))
+        {
+            logger.participantCrashed(peer);
+            outputConnections.remove(peer);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// The option sets a participant has been sent, by the hash of their contents, so that the Coordinator need only send the hash of an
+// option set it has sent before. They are kept in memory, and with a directory given, on disk as well, so that a participant started
+// afresh can still tell the Coordinator which option sets it already has.
+public class OptionSetCache
+{
+    private final Map<String, List<String>> optionSets = Collections.synchronizedMap(new HashMap<>());
+    private final Path directory;
+
+    public OptionSetCache(String directory)
+    {
+        this.directory = directory == null ? null : Paths.get(directory);
+
+        load();
+    }
+
+    // The same options in the same order always give the same hash, as a vote can name an option by its position in the set.
+    public static String hash(List<String> options)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String option : options)
+            {
+                digest.update(option.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+
+            StringBuilder hash = new StringBuilder();
+
+            // Half the digest is plenty to tell the option sets of one deployment apart.
+            byte[] bytes = digest.digest();
+
+            for (int i = 0; i < bytes.length / 2; i++)
+            {
+                hash.append(String.format("%02x", bytes[i]));
+            }
+
+            return hash.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException("SHA-256 is not available.", ex);
+        }
+    }
+
+    public List<String> get(String hash)
+    {
+        List<String> options = optionSets.get(hash);
+
+        return options == null ? null : new ArrayList<>(options);
+    }
+
+    // Only an option set that matches its hash is kept, so a corrupt copy is fetched again rather than used.
+    public void put(String hash, List<String> options)
+    {
+        if (!hash(options).equals(hash) || optionSets.putIfAbsent(hash, new ArrayList<>(options)) != null || directory == null)
+            return;
+
+        try
+        {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve("options_" + hash), options, StandardCharsets.UTF_8);
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    public Set<String> getHashes()
+    {
+        synchronized (optionSets)
+        {
+            return new TreeSet<>(optionSets.keySet());
+        }
+    }
+
+    private void load()
+    {
+        if (directory == null || !Files.isDirectory(directory))
+            return;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "options_*"))
+        {
+            for (Path file : files)
+            {
+                String hash = file.getFileName().toString().substring("options_".length());
+                List<String> options = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+                if (hash(options).equals(hash))
+                    optionSets.put(hash, options);
+            }
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -1,17 +1,16 @@
-import java.util.Collections;
 import java.util.List;
 
 public class Outcome extends Vote
 {
-    private final List<Integer> otherParticipants;
+    private final List<String> otherParticipants;
 
-	public Outcome(int participantPort, String vote, List<Integer> otherParticipants)
+	public Outcome(String participant, String vote, List<String> otherParticipants)
     {
-        super(participantPort, vote);
+        super(participant, vote);
 
-        Collections.sort(otherParticipants);
+        otherParticipants.sort(Address.ORDER);
         this.otherParticipants = otherParticipants;
     }
 
-    public List<Integer> getOtherParticipants() { return otherParticipants; }
+    public List<String> getOtherParticipants() { return otherParticipants; }
 }
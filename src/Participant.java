@@ -3,7 +3,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.*;
-import java.util.List;
+import java.nio.file.Paths;
+import java.util.*;
 import java.util.concurrent.*;
 
 public class Participant
@@ -11,49 +12,79 @@ public class Participant
     private final int coordinatorPort;
     private final int loggerPort;
     private final int portNumber;
+    private final String participantId;
+    private final String coordinatorAddress;
     private final int timeout;
 
     private final Socket socket;
     private BufferedReader in;
     private PrintStream out;
 
+    // Set when this participant offers, in its JOIN, to have the Coordinator's messages compressed.
+    private final MessageCodec codec;
+
+    private final OptionSetCache optionSetCache;
+    private final Deque<String> pendingMessages = new ArrayDeque<>();
+
     private final ParticipantLogger logger;
 
+    private final boolean persistent;
+    private final boolean reportTally;
+    private final WriteAheadLog writeAheadLog;
+
+    private Election election;
+    private List<Long> schedule;
     private Outcome outcome;
+    private boolean outcomeReported;
+    private volatile boolean stationsPresent;
 
     public Participant(int coordinatorPort, int loggerPort, int portNumber, int timeout)
+    {
+        this(coordinatorPort, loggerPort, portNumber, timeout, initLogger(loggerPort, portNumber, timeout));
+    }
+
+    // Used by a ParticipantHost, which gives each of its participants its own logger rather than the per-process singleton.
+    public Participant(int coordinatorPort, int loggerPort, int portNumber, int timeout, ParticipantLogger logger)
     {
         this.coordinatorPort = coordinatorPort;
         this.loggerPort = loggerPort;
         this.portNumber = portNumber;
+        this.participantId = Address.of(Settings.getParticipantHost(), portNumber);
+        this.coordinatorAddress = Address.of(Settings.getCoordinatorHost(), coordinatorPort);
         this.timeout = timeout;
+        this.persistent = Settings.isParticipantPersistent();
+        this.reportTally = Settings.isTallyReportEnabled();
+        this.writeAheadLog = openWriteAheadLog();
+        this.codec = Settings.isCompressionEnabled() ? new MessageCodec(Collections.singletonList(participantId)) : null;
+        this.optionSetCache = Settings.isOptionSetCacheEnabled() ? new OptionSetCache(Settings.getOptionSetCacheDirectory()) : null;
 
-        ParticipantLogger tempLogger;
+        this.logger = logger;
+        this.socket = initialise();
 
         try
         {
-            ParticipantLogger.initLogger(this.loggerPort, this.portNumber, this.timeout);
-            tempLogger = ParticipantLogger.getLogger();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out = new TracingPrintStream(socket.getOutputStream());
+
+            logger.connectionEstablished(this.coordinatorAddress);
         }
         catch (IOException ex)
         {
             ex.printStackTrace();
-            tempLogger = null;
         }
+    }
 
-        this.logger = tempLogger;
-        this.socket = initialise();
-
+    private static ParticipantLogger initLogger(int loggerPort, int portNumber, int timeout)
+    {
         try
         {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintStream(socket.getOutputStream());
-
-            logger.connectionEstablished(this.coordinatorPort);
+            ParticipantLogger.initLogger(loggerPort, portNumber, timeout);
+            return ParticipantLogger.getLogger();
         }
         catch (IOException ex)
         {
             ex.printStackTrace();
+            return null;
         }
     }
 
@@ -73,35 +104,166 @@ public class Participant
 
         sendMessage(MessageType.JOIN);
 
-        int destinationPort = coordinatorPort;
-
         ExecutorService messageService = Executors.newSingleThreadExecutor();
 
-        Callable<List<Integer>> retrieveParticipants = () -> {
-            String message = in.readLine();
-            logger.messageReceived(destinationPort, message);
+        // A persistent participant keeps its Coordinator connection and peer mesh, and holds a new election every time the Coordinator
+        // sends another DETAILS and VOTE_OPTIONS, until the Coordinator closes the connection. One that restarted part way through an
+        // election finishes that election first.
+        if (!resumeElection() || persistent)
+        {
+            while (runElection(parser, messageService) && persistent) { }
+        }
+
+        messageService.shutdown();
+
+        if (election != null)
+            election.close();
+
+        if (writeAheadLog != null)
+            writeAheadLog.close();
+    }
+
+    // Only the full mesh keeps the per-round vote sets that the log records.
+    private WriteAheadLog openWriteAheadLog()
+    {
+        if (!Settings.isWriteAheadLogEnabled() || Settings.getElectionMode() != ElectionMode.FULL_MESH)
+            return null;
+
+        try
+        {
+            return new WriteAheadLog(Paths.get(Settings.getWriteAheadLogDirectory(), "participant_" + participantId.replace(':', '_') + ".wal"),
+                    Settings.getWriteAheadLogSize());
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    // If the write-ahead log holds an election that never reached an outcome, rebuild it from the log and carry it through to the end.
+    // The log uses the same text as the messages it was built from, so it is read back with the MessageParser.
+    private boolean resumeElection()
+    {
+        if (writeAheadLog == null)
+            return false;
+
+        MessageParser parser = new MessageParser();
+
+        List<String> otherParticipants = null;
+        List<String> voteOptions = null;
+        List<Vote> votes = new ArrayList<>();
+        int round = 0;
+
+        for (String record : writeAheadLog.getRecords())
+        {
+            if (record.startsWith(MessageType.OUTCOME.name()))
+                return false;
+            else if (record.startsWith(MessageType.DETAILS.name()))
+                otherParticipants = parser.parseDetails(record);
+            else if (record.startsWith(MessageType.VOTE_OPTIONS.name()))
+                voteOptions = parser.parseVoteOptions(record);
+            else if (record.startsWith(MessageType.SCHEDULE.name()))
+                schedule = parser.parseSchedule(record);
+            else if (record.startsWith(MessageType.VOTE.name()))
+                votes.addAll(parser.parseVotes(record));
+            else if (record.startsWith("ROUND "))
+                round = Integer.parseInt(record.substring("ROUND ".length()));
+        }
+
+        if (otherParticipants == null || voteOptions == null)
+            return false;
+
+        election = new Election(participantId, otherParticipants, voteOptions, logger, timeout);
+        election.setWriteAheadLog(writeAheadLog);
+
+        if (schedule != null)
+            election.setSchedule(schedule.get(0), schedule.get(1));
+
+        synchronized (this)
+        {
+            outcomeReported = false;
+        }
+
+        this.outcome = election.resumeElection(votes, round);
+
+        logOutcome();
+        reportOutcome(outcome);
+
+        return true;
+    }
+
+    private void beginLog(List<String> otherParticipants, List<String> voteOptions)
+    {
+        if (writeAheadLog == null)
+            return;
+
+        writeAheadLog.reset();
+
+        StringBuilder details = new StringBuilder("DETAILS ");
+        otherParticipants.forEach(otherParticipant -> details.append(otherParticipant).append(" "));
+        writeAheadLog.append(details.toString().trim());
+
+        StringBuilder options = new StringBuilder("VOTE_OPTIONS ");
+        voteOptions.forEach(option -> options.append(option).append(" "));
+        writeAheadLog.append(options.toString().trim());
+
+        if (schedule != null)
+            writeAheadLog.append("SCHEDULE " + schedule.get(0) + " " + schedule.get(1));
+
+        writeAheadLog.sync();
+    }
+
+    private void logOutcome()
+    {
+        if (writeAheadLog == null)
+            return;
+
+        writeAheadLog.append("OUTCOME " + outcome.getVote());
+        writeAheadLog.sync();
+    }
+
+    private boolean runElection(MessageParser parser, ExecutorService messageService)
+    {
+        String destination = coordinatorAddress;
+
+        Callable<List<String>> retrieveParticipants = () -> {
+            String message = readLine();
+
+            if (message == null)
+                return null;
+
+            logger.messageReceived(destination, message);
+            stationsPresent = parser.parseStationsPresent(message);
             return parser.parseDetails(message);
         };
 
-        Future<List<Integer>> futureParticipants = messageService.submit(retrieveParticipants);
+        Future<List<String>> futureParticipants = messageService.submit(retrieveParticipants);
 
-        List<Integer> otherParticipants = null;
+        List<String> otherParticipants = null;
 
         try
         {
             otherParticipants = futureParticipants.get();
+
+            if (otherParticipants == null)
+                return false;
+
+            // The Coordinator sends everyone the same DETAILS, which include this participant too.
+            otherParticipants.remove(participantId);
+
             logger.detailsReceived(otherParticipants);
         }
         catch (InterruptedException | ExecutionException ex)
         {
             ex.printStackTrace();
-            return;
+            return false;
         }
 
         Callable<List<String>> retrieveOptions = () -> {
-            String message = in.readLine();
-            logger.messageReceived(destinationPort, message);
-            return parser.parseVoteOptions(message);
+            String message = readLine();
+            logger.messageReceived(destination, message);
+            return resolveOptions(parser, message);
         };
 
         Future<List<String>> futureOptions = messageService.submit(retrieveOptions);
@@ -116,39 +278,133 @@ public class Participant
         // Handle the potential timeout that may occur between the Coordinator sending the DETAILS and the VOTE_OPTIONS.
         catch (TimeoutException ex)
         {
-            logger.participantCrashed(coordinatorPort);
-            return;
+            logger.participantCrashed(coordinatorAddress);
+            return false;
         }
         catch (InterruptedException | ExecutionException ex)
         {
             ex.printStackTrace();
-            return;
+            return false;
         }
 
-        messageService.shutdown();
+        if (Settings.isScheduleEnabled())
+        {
+            Callable<List<Long>> retrieveSchedule = () -> {
+                String message = readLine();
+                logger.messageReceived(destination, message);
+                return parser.parseSchedule(message);
+            };
+
+            try
+            {
+                schedule = messageService.submit(retrieveSchedule).get(timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException ex)
+            {
+                logger.participantCrashed(coordinatorAddress);
+                return false;
+            }
+            catch (InterruptedException | ExecutionException ex)
+            {
+                ex.printStackTrace();
+                return false;
+            }
+        }
 
-        startElection(portNumber, otherParticipants, voteOptions);
+        synchronized (this)
+        {
+            outcomeReported = false;
+        }
 
-        sendMessage(MessageType.OUTCOME);
+        beginLog(otherParticipants, voteOptions);
+
+        startElection(participantId, otherParticipants, voteOptions);
+
+        logOutcome();
+        reportOutcome(outcome);
+
+        return true;
+    }
+
+    // A VOTE_OPTIONS may carry just the hash of an option set sent in an earlier election. If this participant does not have it after
+    // all, it asks the Coordinator for it in full, setting aside anything else that arrives in the meantime.
+    private List<String> resolveOptions(MessageParser parser, String message) throws IOException
+    {
+        String hash = parser.parseOptionSetHash(message);
+        List<String> options = parser.parseVoteOptions(message);
+
+        if (hash == null || optionSetCache == null)
+            return options;
+
+        if (!options.isEmpty())
+        {
+            optionSetCache.put(hash, options);
+            return options;
+        }
+
+        List<String> cachedOptions = optionSetCache.get(hash);
+
+        if (cachedOptions != null)
+            return cachedOptions;
+
+        String request = MessageType.OPTIONS_REQUEST.name() + " " + hash;
+
+        out.println(request);
+        logger.messageSent(coordinatorAddress, request);
+
+        while ((message = receiveLine()) != null)
+        {
+            if (message.startsWith(MessageType.VOTE_OPTIONS.name()))
+            {
+                logger.messageReceived(coordinatorAddress, message);
+
+                options = parser.parseVoteOptions(message);
+                optionSetCache.put(hash, options);
+
+                return options;
+            }
+
+            pendingMessages.add(message);
+        }
+
+        return null;
+    }
+
+    private String readLine() throws IOException
+    {
+        String message = pendingMessages.poll();
+
+        return message != null ? message : receiveLine();
+    }
+
+    private String receiveLine() throws IOException
+    {
+        String message = LamportClock.receive(in.readLine());
+
+        return codec == null ? message : codec.decode(message);
     }
 
     public Socket initialise()
     {
+        Backoff backoff = new Backoff(timeout / 50, timeout);
+
         while (true)
         {
             try
             {
-                Socket socket = new Socket("localhost", this.coordinatorPort);
+                // Bound the connect, as a Coordinator whose backlog has overflowed silently drops the connection request.
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(Settings.getCoordinatorHost(), this.coordinatorPort), timeout);
 
                 return socket;
             }
-            catch (ConnectException e)
+            catch (ConnectException | SocketTimeoutException e)
             {
-                System.out.println("Coordinator at port number '" + this.coordinatorPort + "' not found. Attempting to reconnect...");
+                System.out.println("Coordinator at '" + this.coordinatorAddress + "' not found. Attempting to reconnect...");
 
                 try
                 {
-                    Thread.sleep(timeout / 5);
+                    backoff.sleep();
                 }
                 catch (InterruptedException ex)
                 {
@@ -175,21 +431,37 @@ public class Participant
             case OUTCOME:
                 message = sendOutcome();
                 break;
+            case TALLY:
+                message = sendTally();
+                break;
             default:
                 throw new IllegalArgumentException(type + " is an invalid message type for a participant.");
         }
 
-        logger.messageSent(this.coordinatorPort, message);
+        logger.messageSent(this.coordinatorAddress, message);
     }
 
     private String sendJoinRequest()
     {
         StringBuilder message = new StringBuilder("JOIN ");
 
-        message.append(this.portNumber);
+        message.append(this.participantId);
+
+        if (codec != null)
+            message.append(" ").append(MessageType.COMPRESS.name());
+
+        if (BallotBox.forParticipant(participantId) != null)
+            message.append(" ").append(MessageParser.STATIONS);
+
+        // Tell the Coordinator which option sets it need only send the hash of.
+        if (optionSetCache != null)
+        {
+            message.append(" ").append(MessageType.VOTE_OPTIONS.name());
+            optionSetCache.getHashes().forEach(hash -> message.append(" ").append(hash));
+        }
 
         out.println(message.toString().trim());
-        logger.joinSent(this.coordinatorPort);
+        logger.joinSent(this.coordinatorAddress);
 
         return message.toString().trim();
     }
@@ -200,9 +472,9 @@ public class Participant
 
         message.append(this.outcome.getVote()).append(" ");
 
-        List<Integer> participants = this.outcome.getOtherParticipants();
+        List<String> participants = this.outcome.getOtherParticipants();
 
-        for (int otherParticipant : participants)
+        for (String otherParticipant : participants)
         {
             message.append(otherParticipant).append(" ");
         }
@@ -214,9 +486,104 @@ public class Participant
         return message.toString().trim();
     }
 
-    public void startElection(int participant, List<Integer> otherParticipants, List<String> voteOptions)
+    private String sendTally()
     {
-        Election election = new Election(participant, otherParticipants, voteOptions, logger, timeout);
+        String message = election.getTally().toMessage(MessageType.TALLY);
+
+        out.println(message);
+
+        return message;
+    }
+
+    public void startElection(String participant, List<String> otherParticipants, List<String> voteOptions)
+    {
+        // Only the full mesh keeps its connections between elections; every other mode sets up afresh each time.
+        if (election != null && election.getClass() == Election.class && Settings.getElectionMode() == ElectionMode.FULL_MESH)
+        {
+            election.nextElection(otherParticipants, voteOptions);
+            election.setWriteAheadLog(writeAheadLog);
+
+            if (schedule != null)
+                election.setSchedule(schedule.get(0), schedule.get(1));
+
+            reportEarlyOutcome();
+
+            this.outcome = election.holdElection();
+            return;
+        }
+
+        if (election != null)
+            election.close();
+
+        switch (Settings.getElectionMode())
+        {
+            case GOSSIP:
+                election = new GossipElection(participant, otherParticipants, voteOptions, logger, timeout,
+                        Settings.getGossipFanout(), Settings.getGossipProbability(), Settings.isGossipPullEnabled());
+                break;
+            case AGGREGATION:
+                election = new AggregationElection(participant, otherParticipants, voteOptions, logger, timeout);
+                break;
+            case PIPELINED:
+                election = new PipelinedElection(participant, otherParticipants, voteOptions, logger, timeout);
+                break;
+            case MULTICAST:
+                try
+                {
+                    election = new MulticastElection(participant, otherParticipants, voteOptions, logger, timeout,
+                            Settings.getMulticastGroup(), Settings.getMulticastPort(), Settings.getMulticastInterface(), Settings.getMulticastTimeToLive());
+                }
+                // Without a usable multicast socket, fall back to the full mesh so that the election still happens.
+                catch (IOException ex)
+                {
+                    ex.printStackTrace();
+                    election = new Election(participant, otherParticipants, voteOptions, logger, timeout);
+                }
+                break;
+            default:
+                election = new Election(participant, otherParticipants, voteOptions, logger, timeout);
+                break;
+        }
+
+        election.setWriteAheadLog(writeAheadLog);
+
+        if (schedule != null)
+            election.setSchedule(schedule.get(0), schedule.get(1));
+
+        reportEarlyOutcome();
+
         this.outcome = election.holdElection();
     }
+
+    // Tell the Coordinator the outcome as soon as no outstanding vote could change it, while carrying on with the rounds so that the
+    // other participants still get this participant's votes. Only for a single election, as the Coordinator starts the next one in a
+    // series as soon as every outcome is in, which could be before this participant's rounds have finished. Nor when reporting the
+    // tally, as the counts at that point are only partial. Nor with a polling station taking part, as its ballots could outweigh any
+    // lead.
+    private void reportEarlyOutcome()
+    {
+        if (!Settings.isEarlyOutcomeEnabled() || persistent || reportTally || stationsPresent)
+            return;
+
+        election.onDecided(outcome -> {
+            logger.outcomeDecided(outcome.getVote(), outcome.getOtherParticipants());
+            reportOutcome(outcome);
+        });
+    }
+
+    // Send the outcome to the Coordinator, unless one has already been sent for this election.
+    private synchronized void reportOutcome(Outcome outcome)
+    {
+        if (outcomeReported)
+            return;
+
+        outcomeReported = true;
+        this.outcome = outcome;
+
+        // The tally goes first, so that the Coordinator has it by the time it counts this participant as reported.
+        if (reportTally)
+            sendMessage(MessageType.TALLY);
+
+        sendMessage(MessageType.OUTCOME);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.util.concurrent.*;
+
+// Runs many participants, on consecutive ports, in a single process. They share the election thread pools and one client to the Logger
+// process, and each gets a logger of its own, so that a machine can hold far more participants than it could run JVMs, without paying
+// for a JVM start-up and JIT warm-up per participant.
+//
+// In the full mesh, the connections from other participants are all read by the one MessageReader, so each hosted participant needs
+// only its own thread and an accepting thread, besides the short-lived ones that open its connections. The other election modes still
+// read with a blocking thread per connection, so their threads grow with the square of the election: a reading thread for every other
+// participant, or about count * (election size + 1) in all. That, not memory, is what limits a host in those modes, so it refuses to
+// start more than host.maxThreads would allow (with the election size given by host.electionSize, if it has participants hosted
+// elsewhere).
+public class ParticipantHost
+{
+    private final int coordinatorPort;
+    private final int loggerPort;
+    private final int firstPort;
+    private final int numberOfParticipants;
+    private final int timeout;
+
+    private final UDPLoggerClient loggerClient;
+
+    public ParticipantHost(int coordinatorPort, int loggerPort, int firstPort, int numberOfParticipants, int timeout)
+    {
+        this.coordinatorPort = coordinatorPort;
+        this.loggerPort = loggerPort;
+        this.firstPort = firstPort;
+        this.numberOfParticipants = numberOfParticipants;
+        this.timeout = timeout;
+
+        this.loggerClient = new UDPLoggerClient(loggerPort, firstPort, timeout);
+    }
+
+    public static void main(String[] args)
+    {
+        ParticipantHost host = new ParticipantHost(Integer.parseInt(args[0]),
+                Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]),
+                Integer.parseInt(args[4]));
+
+        host.run();
+    }
+
+    public void run()
+    {
+        long threads = Settings.getElectionMode() == ElectionMode.FULL_MESH
+                ? 2L * numberOfParticipants
+                : (long) numberOfParticipants * (Settings.getHostElectionSize(numberOfParticipants) + 1);
+
+        if (threads > Settings.getHostMaxThreads())
+        {
+            System.err.println("Hosting " + numberOfParticipants + " participants would take about " + threads + " threads, more than the "
+                    + Settings.getHostMaxThreads() + " allowed by host.maxThreads.");
+            return;
+        }
+
+        // Each participant blocks on its Coordinator connection and its rounds, so it gets a thread of its own. Every participant has to
+        // be running for the election to start, so the pool cannot be smaller than the number of participants.
+        ExecutorService participantService = Executors.newFixedThreadPool(numberOfParticipants);
+
+        for (int i = 0; i < numberOfParticipants; i++)
+        {
+            int portNumber = firstPort + i;
+
+            participantService.execute(() -> {
+                try
+                {
+                    ParticipantLogger logger = ParticipantLogger.createLogger(loggerClient, portNumber);
+
+                    new Participant(coordinatorPort, loggerPort, portNumber, timeout, logger).run();
+                }
+                catch (IOException ex)
+                {
+                    ex.printStackTrace();
+                }
+            });
+        }
+
+        participantService.shutdown();
+
+        try
+        {
+            participantService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -9,7 +9,7 @@ public class ParticipantLogger {
 	
 	private final PrintStream ps;
 	private final UDPLoggerClient udpLoggerClient;
-	private final int thisParticipant;
+	private final String thisParticipant;
 	
 	/**
 	 * Initialises the Logger for this Participant
@@ -26,6 +26,19 @@ public class ParticipantLogger {
 			throw new RuntimeException("ParticipantLogger already initialised");
 	}
 	
+	/**
+	 * Creates a separate Logger for one of several Participants hosted in the same process. Unlike initLogger, this can be called any
+	 * number of times, and every Logger created this way sends to the Logger process through the same client.
+	 * 
+	 * @param udpLoggerClient the client shared by every Participant in this process
+	 * @param processId the ID of this Participant, i.e. the TCP port where this Participant is listening on
+	 * @return a new Logger for this Participant
+	 * @throws IOException
+	 */
+	public static ParticipantLogger createLogger(UDPLoggerClient udpLoggerClient, int processId) throws IOException {
+		return new ParticipantLogger(udpLoggerClient, processId);
+	}
+	
 	/**
 	 * @return the singleton instance of the Logger for this Participant
 	 */
@@ -36,29 +49,35 @@ public class ParticipantLogger {
 	}
 	
 	private ParticipantLogger(int loggerServerPort, int processId, int timeout) throws IOException {
-		thisParticipant = processId;
-		udpLoggerClient = new UDPLoggerClient(loggerServerPort, processId, timeout);
-		ps = new PrintStream("participant_" + thisParticipant + "_" + System.currentTimeMillis() + ".log");
+		this(new UDPLoggerClient(loggerServerPort, processId, timeout), processId);
+	}
+	
+	private ParticipantLogger(UDPLoggerClient udpLoggerClient, int processId) throws IOException {
+		// Tagged with the full host:port ID, as participants on different hosts may listen on the same port.
+		thisParticipant = Address.of(Settings.getParticipantHost(), processId);
+		this.udpLoggerClient = udpLoggerClient;
+		ps = new PrintStream("participant_" + thisParticipant.replace(':', '_') + "_" + System.currentTimeMillis() + ".log");
 	}
 	
 	protected void logMessage(String message) {
+		message = LamportClock.trace(message);
 		ps.println(message);
 		if (udpLoggerClient != null)
 			try {
 				udpLoggerClient.logToServer(message);
 			} catch (IOException e) {
-				ps.println("[P" + thisParticipant + "] Exception caught: " + e.getMessage());
-				ps.println("[P" + thisParticipant + "] Stack trace: " + e.getStackTrace());
+				ps.println("[" + thisParticipant + "] Exception caught: " + e.getMessage());
+				ps.println("[" + thisParticipant + "] Stack trace: " + e.getStackTrace());
 			}
 	}
 
 	/**
 	 * To be invoked when this Participant sends the JOIN message to the Coordinator
 	 * 
-	 * @param coordinatorId the ID of the Coordinator, i.e. the port where the Coordinator is listening on
+	 * @param coordinatorId the ID of the Coordinator, i.e. the host:port where the Coordinator is listening on
 	 */
-	public void joinSent(int coordinatorId) {
-		logMessage("[P" + thisParticipant + "] JOIN sent to Coordinator on port " + coordinatorId);
+	public void joinSent(String coordinatorId) {
+		logMessage("[" + thisParticipant + "] JOIN sent to Coordinator on " + coordinatorId);
 	}
 	
 	/**
@@ -66,8 +85,8 @@ public class ParticipantLogger {
 	 * 
 	 * @param participantIds the list of Participant IDs 
 	 */
-	public void detailsReceived(List<Integer> participantIds) {
-		logMessage("[P" + thisParticipant + "] received participant ports: " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")));
+	public void detailsReceived(List<String> participantIds) {
+		logMessage("[" + thisParticipant + "] received participant ports: " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")));
 	}
 	
 	/**
@@ -76,7 +95,7 @@ public class ParticipantLogger {
 	 * @param votingOptions the list of voting options
 	 */
 	public void voteOptionsReceived(List<String> votingOptions) {
-		logMessage("[P" + thisParticipant + "] received vote options: " + votingOptions.stream().map(Object::toString).collect(Collectors.joining(", ")));
+		logMessage("[" + thisParticipant + "] received vote options: " + votingOptions.stream().map(Object::toString).collect(Collectors.joining(", ")));
 	}
 	
 	/**
@@ -85,7 +104,7 @@ public class ParticipantLogger {
 	 * @param round the number of the new round, e.g. 1 for the first round, 2 for the second and so on
 	 */
 	public void beginRound(int round) {
-		logMessage("[P" + thisParticipant + "] begin round " + round);
+		logMessage("[" + thisParticipant + "] begin round " + round);
 	}
 	
 	/**
@@ -94,27 +113,27 @@ public class ParticipantLogger {
 	 * @param round the number of the round, e.g. 1 for the first round, 2 for the second and so on
 	 */
 	public void endRound(int round) {
-		logMessage("[P" + thisParticipant + "] end round " + round);
+		logMessage("[" + thisParticipant + "] end round " + round);
 	}
 	
 	/**
 	 * To be invoked when this Participant sends a VOTE message to another Participant
 	 * 
-	 * @param destinationParticipantId the ID of the other Participant, the port where the Participant is listening on
+	 * @param destinationParticipantId the ID of the other Participant, the host:port where the Participant is listening on
 	 * @param votes the list of votes sent
 	 */
-	public void votesSent(int destinationParticipantId, List<Vote> votes) {
-		logMessage("[P" + thisParticipant + "] votes sent to " + destinationParticipantId + ": " + votes.stream().map(Object::toString).collect(Collectors.joining(", ")));
+	public void votesSent(String destinationParticipantId, List<Vote> votes) {
+		logMessage("[" + thisParticipant + "] votes sent to " + destinationParticipantId + ": " + votes.stream().map(Object::toString).collect(Collectors.joining(", ")));
 	}
 	
 	/**
 	 * To be invoked when this Participant receives a VOTE message from another Participant
 	 * 
-	 * @param senderParticipantId the ID of the other Participant, the port where the Participant is listening on
+	 * @param senderParticipantId the ID of the other Participant, the host:port where the Participant is listening on
 	 * @param votes the list of votes received
 	 */
-	public void votesReceived(int senderParticipantId, List<Vote> votes) {
-		logMessage("[P" + thisParticipant + "] votes received from " + senderParticipantId + ": " + votes.stream().map(Object::toString).collect(Collectors.joining(", ")));
+	public void votesReceived(String senderParticipantId, List<Vote> votes) {
+		logMessage("[" + thisParticipant + "] votes received from " + senderParticipantId + ": " + votes.stream().map(Object::toString).collect(Collectors.joining(", ")));
 	}
 	
 	/**
@@ -123,8 +142,8 @@ public class ParticipantLogger {
 	 * @param vote the vote decided by this Participant
 	 * @param participantIds the list of IDs of Participants that were taken into account in settling the vote
 	 */
-	public void outcomeDecided(String vote, List<Integer> participantIds) {
-		logMessage("[P" + thisParticipant + "] outcome vote decided: " + vote + "(based on votes of Participants " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")) + ")");
+	public void outcomeDecided(String vote, List<String> participantIds) {
+		logMessage("[" + thisParticipant + "] outcome vote decided: " + vote + "(based on votes of Participants " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")) + ")");
 	}
 	
 	/**
@@ -133,62 +152,62 @@ public class ParticipantLogger {
 	 * @param vote the vote decided by this Participant
 	 * @param participantIds the list of IDs of Participants that were taken into account in settling the vote
 	 */
-	public void outcomeNotified(String vote, List<Integer> participantIds) {
-		logMessage("[P" + thisParticipant + "] outcome vote sent to Coordinator: " + vote + "(based on votes of Participants " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")) + ")");
+	public void outcomeNotified(String vote, List<String> participantIds) {
+		logMessage("[" + thisParticipant + "] outcome vote sent to Coordinator: " + vote + "(based on votes of Participants " + participantIds.stream().map(Object::toString).collect(Collectors.joining(", ")) + ")");
 	}
 	
 	/**
 	 * To be invoked when this Participant detects the crash of another Participant. 
 	 * This method must be invoked only if the ID of the crashed Participant is known.
 	 * 
-	 * @param crashedParticipantId the ID of the crashed Participant, i.e. the port where the crashed Participant was listening on
+	 * @param crashedParticipantId the ID of the crashed Participant, i.e. the host:port where the crashed Participant was listening on
 	 */
-	public void participantCrashed(int crashedParticipantId) {
-		logMessage("[P" + thisParticipant + "] participant crashed: " + crashedParticipantId);
+	public void participantCrashed(String crashedParticipantId) {
+		logMessage("[" + thisParticipant + "] participant crashed: " + crashedParticipantId);
 	}
 	
 	/**
 	 * To be invoked when this Participant starts listening for incoming TCP connections
 	 */
 	public void startedListening() {
-		logMessage("[P" + thisParticipant + "] started listening on port " + thisParticipant);
+		logMessage("[" + thisParticipant + "] started listening on port " + thisParticipant);
 	}
 	
 	/**
 	 * To be invoked when another Participant establishes a TCP connection with this Participant
 	 * 
-	 * @param otherPort the remote port number to which this socket is connected; note that this is different from the ID of the other Participant
+	 * @param otherAddress the remote host:port to which this socket is connected; note that this is different from the ID of the other Participant
 	 */
-	public void connectionAccepted(int otherPort) {
-		logMessage("[P" + thisParticipant + "] accepted connection from port " + otherPort);
+	public void connectionAccepted(String otherAddress) {
+		logMessage("[" + thisParticipant + "] accepted connection from " + otherAddress);
 	}
 	
 	/**
 	 * To be invoked when this Participant establishes a TCP connection with another process
 	 * 
-	 * @param otherPort the TCP port where the other process is listening on
+	 * @param otherAddress the host:port where the other process is listening on
 	 */
-	public void connectionEstablished(int otherPort) {
-		logMessage("[P" + thisParticipant + "] connection established to port " + otherPort);
+	public void connectionEstablished(String otherAddress) {
+		logMessage("[" + thisParticipant + "] connection established to " + otherAddress);
 	}
 	
 	/**
 	 * To be invoked when this Participant sends a TCP message to another process
 	 * 
-	 * @param destinationPort the remote port number to which the message is sent
+	 * @param destination the ID (or remote host:port) of the process to which the message is sent
 	 * @param message the message sent
 	 */
-	public void messageSent(int destinationPort, String message) {
-		logMessage("[P" + thisParticipant + "] message sent to " + destinationPort + ": \"" + message + "\"");
+	public void messageSent(String destination, String message) {
+		logMessage("[" + thisParticipant + "] message sent to " + destination + ": \"" + message + "\"");
 	}
 	
 	/**
 	 * To be invoked when this Participant receives a TCP message from another process
 	 * 
-	 * @param senderPort the remote port number from which the message is received
+	 * @param sender the ID (or remote host:port) of the process from which the message is received
 	 * @param message the received message
 	 */
-	public void messageReceived(int senderPort, String message) {
-		logMessage("[P" + thisParticipant + "] message received from " + senderPort + ": \"" + message + "\"");
+	public void messageReceived(String sender, String message) {
+		logMessage("[" + thisParticipant + "] message received from " + sender + ": \"" + message + "\"");
 	}
 }
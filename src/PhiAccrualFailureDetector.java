@@ -0,0 +1,128 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The phi accrual failure detector (Hayashibara et al.) keeps a sliding window of heartbeat inter-arrival times for each process and
+// reports suspicion as phi = -log10(P(the next heartbeat arrives later than now)), assuming normally distributed intervals. A process
+// that has been heartbeating regularly is suspected within a few missed intervals, while one on a jittery link is given more slack.
+public class PhiAccrualFailureDetector implements FailureDetector
+{
+    private final double threshold;
+    private final int maxSampleSize;
+    private final double minStdDeviation;
+    private final long firstHeartbeatEstimate;
+
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+
+    public PhiAccrualFailureDetector(double threshold, int maxSampleSize, double minStdDeviation, long firstHeartbeatEstimate)
+    {
+        this.threshold = threshold;
+        this.maxSampleSize = maxSampleSize;
+        this.minStdDeviation = minStdDeviation;
+        this.firstHeartbeatEstimate = firstHeartbeatEstimate;
+    }
+
+    @Override
+    public void heartbeat(String process)
+    {
+        long now = now();
+        History history = histories.get(process);
+
+        if (history == null)
+        {
+            // Seed the window around the expected interval so that the very first gap is judged sensibly.
+            history = new History();
+            history.add(firstHeartbeatEstimate - firstHeartbeatEstimate / 4, maxSampleSize);
+            history.add(firstHeartbeatEstimate + firstHeartbeatEstimate / 4, maxSampleSize);
+            history.lastHeartbeat = now;
+
+            histories.put(process, history);
+            return;
+        }
+
+        synchronized (history)
+        {
+            history.add(now - history.lastHeartbeat, maxSampleSize);
+            history.lastHeartbeat = now;
+        }
+    }
+
+    @Override
+    public boolean isSuspected(String process)
+    {
+        return phi(process) > threshold;
+    }
+
+    @Override
+    public void remove(String process)
+    {
+        histories.remove(process);
+    }
+
+    public double phi(String process)
+    {
+        History history = histories.get(process);
+
+        if (history == null)
+            return 0;
+
+        double elapsed;
+        double mean;
+        double stdDeviation;
+
+        synchronized (history)
+        {
+            elapsed = now() - history.lastHeartbeat;
+            mean = history.mean();
+            stdDeviation = Math.max(history.stdDeviation(), minStdDeviation);
+        }
+
+        // Logistic approximation of the normal cumulative distribution function, as used by Akka and Cassandra.
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+
+        if (elapsed > mean)
+            return -Math.log10(e / (1.0 + e));
+        else
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    private static long now()
+    {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private static class History
+    {
+        private final Deque<Long> intervals = new ArrayDeque<>();
+        private double sum;
+        private double sumOfSquares;
+        private long lastHeartbeat;
+
+        private void add(long interval, int maxSampleSize)
+        {
+            if (intervals.size() >= maxSampleSize)
+            {
+                long oldest = intervals.removeFirst();
+                sum -= oldest;
+                sumOfSquares -= (double) oldest * oldest;
+            }
+
+            intervals.addLast(interval);
+            sum += interval;
+            sumOfSquares += (double) interval * interval;
+        }
+
+        private double mean()
+        {
+            return sum / intervals.size();
+        }
+
+        private double stdDeviation()
+        {
+            double mean = mean();
+            return Math.sqrt(Math.max(0, sumOfSquares / intervals.size() - mean * mean));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Forwards every newly merged vote to the other participants the moment it arrives, tagged with the round the forwarder is in, rather
+// than holding it until the next lock-step round. Rounds then only pace crash detection: a participant moves on to round r + 1 once
+// every live peer has been heard from in round r (or has been given up on), so fast parts of the cluster never wait for a round
+// timer, only for the peers that are actually slow. A participant that has every vote says so by jumping straight to the last round.
+public class PipelinedElection extends Election
+{
+    private final List<String> livePeers;
+
+    // The highest round each peer has been heard from in; TCP delivers in order, so that peer has also finished all earlier rounds.
+    private final Map<String, Integer> highestRounds = new HashMap<>();
+    private final Set<String> closedPeers = new HashSet<>();
+
+    private volatile int currentRound = 1;
+
+    public PipelinedElection(String participant, List<String> otherParticipants, List<String> voteOptions, ParticipantLogger logger, int timeout)
+    {
+        super(participant, otherParticipants, voteOptions, logger, timeout);
+
+        this.livePeers = Collections.synchronizedList(new ArrayList<>(otherParticipants));
+
+        for (String otherParticipant : otherParticipants)
+        {
+            highestRounds.put(otherParticipant, 0);
+        }
+    }
+
+    @Override
+    public Outcome holdElection()
+    {
+        establishConnections(otherParticipants);
+
+        for (int roundNumber = 1; roundNumber <= numberOfRounds; roundNumber++)
+        {
+            logger.beginRound(roundNumber);
+            currentRound = roundNumber;
+
+            // Opening a round tells the peers this participant has reached it. Everything learned so far has already been forwarded,
+            // so only the first round has a vote to carry.
+            sendVotes(roundNumber, roundNumber == 1 ? Collections.singletonList(collectedVotes.get(0)) : Collections.emptyList(), null);
+
+            try
+            {
+                awaitRound(roundNumber, getRoundDeadline(roundNumber, System.currentTimeMillis()));
+            }
+            catch (InterruptedException ex)
+            {
+                ex.printStackTrace();
+            }
+
+            logger.endRound(roundNumber);
+
+            if (collectedVotes.size() == otherParticipants.size() + 1)
+            {
+                if (roundNumber < numberOfRounds)
+                    sendVotes(numberOfRounds, Collections.emptyList(), null);
+
+                break;
+            }
+        }
+
+        List<String> voters = tally.getVoters();
+
+        return new Outcome(participant, decideOutcome(tally.getCounts(), voters), voters);
+    }
+
+    @Override
+    protected void establishConnections(List<String> otherParticipants)
+    {
+        acceptConnections(this::receiveVotes);
+
+        List<Callable<Boolean>> connections = new ArrayList<>();
+
+        for (String otherParticipant : otherParticipants)
+        {
+            connections.add(() -> {
+                Socket socket = connect(otherParticipant);
+
+                if (socket == null)
+                    return false;
+
+                PrintStream out = Settings.isCompressionEnabled()
+                        ? negotiateCompression(socket, otherParticipant)
+                        : new TracingPrintStream(socket.getOutputStream());
+
+                // Identify ourselves straight away, so the other participant's failure detector can watch us from the first round.
+                if (heartbeatInterval > 0)
+                    out.println("HEARTBEAT " + participant);
+
+                outputConnections.put(otherParticipant, out);
+
+                return true;
+            });
+        }
+
+        try
+        {
+            receiveService.invokeAll(connections);
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+        }
+
+        for (String otherParticipant : otherParticipants)
+        {
+            if (!outputConnections.containsKey(otherParticipant))
+                peerCrashed(otherParticipant);
+        }
+
+        // Votes only flow while the election is moving, so without heartbeats a live peer would fall silent between its rounds.
+        startHeartbeats();
+    }
+
+    private void awaitRound(int roundNumber, long deadline) throws InterruptedException
+    {
+        synchronized (highestRounds)
+        {
+            while (true)
+            {
+                List<String> behind = new ArrayList<>();
+
+                for (String peer : new ArrayList<>(livePeers))
+                {
+                    if (highestRounds.get(peer) >= roundNumber)
+                        continue;
+
+                    if (closedPeers.contains(peer) || failureDetector.isSuspected(peer))
+                        peerCrashed(peer);
+                    else
+                        behind.add(peer);
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+
+                if (behind.isEmpty())
+                    return;
+
+                if (remaining <= 0)
+                {
+                    behind.forEach(this::peerCrashed);
+                    return;
+                }
+
+                highestRounds.wait(Math.min(remaining, Math.max(1, timeout / 20)));
+            }
+        }
+    }
+
+    private void sendVotes(int roundNumber, List<Vote> votes, String excludedPeer)
+    {
+        StringBuilder message = new StringBuilder("ROUND_VOTE ");
+        message.append(participant).append(" ").append(roundNumber).append(" ");
+
+        for (Vote vote : votes)
+        {
+            message.append(vote.getParticipant()).append(" ")
+                    .append(vote.getVote()).append(" ");
+        }
+
+        for (String peer : new ArrayList<>(livePeers))
+        {
+            PrintStream out = outputConnections.get(peer);
+
+            if (peer.equals(excludedPeer) || out == null)
+                continue;
+
+            out.println(message.toString().trim());
+            logger.votesSent(peer, votes);
+            logger.messageSent(peer, message.toString().trim());
+        }
+    }
+
+    private void receiveVotes(Socket socket)
+    {
+        MessageParser parser = new MessageParser();
+        MessageCodec codec = null;
+        String sender = null;
+
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String message;
+
+            while ((message = LamportClock.receive(in.readLine())) != null)
+            {
+                if (codec != null)
+                    message = codec.decode(message);
+
+                if (message.startsWith(MessageType.COMPRESS.name()))
+                {
+                    codec = answerCompression(socket, message);
+                    continue;
+                }
+
+                if (message.startsWith(MessageType.HEARTBEAT.name()))
+                {
+                    sender = parser.parseHeartbeat(message);
+                    failureDetector.heartbeat(sender);
+                    continue;
+                }
+
+                VoteResponse response = parser.parseRoundVotes(message);
+                sender = response.getParticipant();
+
+                logger.messageReceived(sender, message);
+
+                if (!response.getVotes().isEmpty())
+                    logger.votesReceived(sender, response.getVotes());
+
+                failureDetector.heartbeat(sender);
+
+                // Votes are forwarded as soon as they are merged, whatever round they were sent in, so early messages from peers that
+                // are ahead are handled just like on-time ones.
+                List<Vote> mergedVotes = mergeVotes(response.getVotes());
+
+                if (!mergedVotes.isEmpty())
+                    sendVotes(currentRound, mergedVotes, sender);
+
+                synchronized (highestRounds)
+                {
+                    highestRounds.merge(sender, response.getRound(), Math::max);
+                    highestRounds.notifyAll();
+                }
+            }
+        }
+        catch (IOException ignored) { }
+
+        if (sender != null)
+        {
+            synchronized (highestRounds)
+            {
+                closedPeers.add(sender);
+                highestRounds.notifyAll();
+            }
+        }
+    }
+
+    private void peerCrashed(String peer)
+    {
+        if (livePeers.remove(peer))
+        {
+            logger.participantCrashed(peer);
+            outputConnections.remove(peer);
+            failureDetector.remove(peer);
+        }
+    }
+}
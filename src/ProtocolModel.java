@@ -0,0 +1,297 @@
+import java.util.*;
+import java.util.zip.CRC32;
+
+// A model of the full-mesh protocol, run in virtual time on one discrete-event Simulation, so that thousands of elections (with crashes
+// injected part way through) take a second rather than hours. Everything random, from the votes to the latencies and crashes, is drawn
+// from the seed, so a run with the same arguments is repeated exactly.
+//
+// It is a model of the protocol, not a run of the real code: ModelParticipant restates the rounds of Election, and only Tally, Vote and
+// the seeding of votes are shared with it. The Coordinator, sockets, threads, heartbeats, the phi detector, rejoining, compression and
+// the other election modes are not modelled at all, so a bug in Election will not show up here, and a change to Election's rounds has
+// to be made to ModelParticipant as well for what the model (and TimeoutTuner, which relies on it) reports to stay true.
+//
+// Usage: ProtocolModel <participants> <elections> <timeout> <seed> [options...]
+// with -Dsimulation.crashes=<per election>, -Dsimulation.latency=<ms>, -Dsimulation.jitter=<ms>, -Dsimulation.sendCost=<ms>,
+// -Dsimulation.verbose=true, and the round policy of -Delection.schedule and -Delection.roundLength as for real elections.
+public class ProtocolModel
+{
+    public static final String COORDINATOR = "coordinator";
+
+    private final int numberOfParticipants;
+    private final List<String> options;
+    private final long seed;
+    private final LatencyModel latencyModel;
+
+    private final long timeout;
+    private final boolean scheduled;
+    private final long roundLength;
+    private final long sendCost;
+    private final int crashesPerElection;
+
+    private Simulation simulation;
+    private final Map<String, ModelParticipant> participants = new LinkedHashMap<>();
+
+    public ProtocolModel(int numberOfParticipants, int timeout, long seed, List<String> options, LatencyModel latencyModel)
+    {
+        this(numberOfParticipants, timeout, seed, options, latencyModel, Settings.isScheduleEnabled(), Settings.getRoundLength(timeout));
+    }
+
+    public ProtocolModel(int numberOfParticipants, int timeout, long seed, List<String> options, LatencyModel latencyModel, boolean scheduled,
+            int roundLength)
+    {
+        this.numberOfParticipants = numberOfParticipants;
+        this.options = options;
+        this.seed = seed;
+        this.latencyModel = latencyModel;
+
+        this.timeout = 1000L * timeout;
+        this.scheduled = scheduled;
+        this.roundLength = 1000L * roundLength;
+        this.sendCost = (long) (1000 * Settings.getDouble("simulation.sendCost", 0.01));
+        this.crashesPerElection = Settings.getInt("simulation.crashes", 0);
+    }
+
+    public static void main(String[] args)
+    {
+        int numberOfParticipants = Integer.parseInt(args[0]);
+        int numberOfElections = Integer.parseInt(args[1]);
+        int timeout = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+
+        List<String> options = new ArrayList<>();
+        for (int i = 4; i < args.length; i++) { options.add(args[i]); }
+        if (options.isEmpty()) { options.addAll(Arrays.asList("A", "B", "C")); }
+
+        ProtocolModel model = new ProtocolModel(numberOfParticipants, timeout, seed, options, LatencyModel.create());
+        boolean verbose = Settings.getBoolean("simulation.verbose", false);
+
+        CRC32 digest = new CRC32();
+        long virtualTime = 0;
+        int agreed = 0;
+        int crashesDetected = 0;
+        int falseCrashes = 0;
+
+        long startTime = System.nanoTime();
+
+        for (int election = 1; election <= numberOfElections; election++)
+        {
+            Result result = model.simulateElection(election);
+
+            result.update(digest);
+            virtualTime += result.getDuration();
+            agreed += result.isAgreed() ? 1 : 0;
+            crashesDetected += result.getCrashesDetected();
+            falseCrashes += result.getFalseCrashes();
+
+            if (verbose)
+                System.out.println(result);
+        }
+
+        double wallTime = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.println("elections " + numberOfElections + ", participants " + numberOfParticipants + ", timeout " + timeout
+                + " ms, crashes per election " + model.crashesPerElection + ", seed " + seed);
+        System.out.println(String.format("virtual time %.1f s, wall time %.2f s (%.0f elections/s)",
+                virtualTime / 1e6, wallTime, numberOfElections / Math.max(wallTime, 1e-9)));
+        System.out.println(String.format("mean election latency %.1f ms", virtualTime / 1e3 / Math.max(1, numberOfElections)));
+        System.out.println("agreement " + agreed + "/" + numberOfElections + ", crashes detected " + crashesDetected
+                + ", false crashes " + falseCrashes);
+        System.out.println(String.format("digest %08x", digest.getValue()));
+    }
+
+    // Each election has a seed of its own, so any one of them can be replayed without running the ones before it.
+    public Result simulateElection(int election)
+    {
+        long electionSeed = seed * 1_000_003 + election;
+
+        simulation = new Simulation(electionSeed);
+        participants.clear();
+
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 1; i <= numberOfParticipants; i++)
+        {
+            ids.add(Address.of("localhost", 13000 + i));
+        }
+
+        for (String id : ids)
+        {
+            List<String> otherParticipants = new ArrayList<>(ids);
+            otherParticipants.remove(id);
+
+            Random random = Election.seededRandom(electionSeed, id);
+            List<String> choices = new ArrayList<>();
+
+            for (List<String> question : Questions.split(options))
+            {
+                choices.add(question.get(random.nextInt(question.size())));
+            }
+
+            Vote vote = new Vote(id, Questions.join(choices));
+
+            participants.put(id, new ModelParticipant(id, otherParticipants, vote, this));
+        }
+
+        // The Coordinator writes the DETAILS and VOTE_OPTIONS to each participant in turn.
+        long departure = 0;
+
+        for (ModelParticipant participant : participants.values())
+        {
+            simulation.scheduleAt(departure + latencyModel.sample(COORDINATOR, participant.getParticipant(), simulation.getRandom()), participant::start);
+            departure += sendCost;
+        }
+
+        List<String> crashed = new ArrayList<>(ids);
+        Collections.shuffle(crashed, simulation.getRandom());
+        crashed = crashed.subList(0, Math.min(crashesPerElection, crashed.size()));
+
+        long expectedDuration = (numberOfParticipants - 1) * (scheduled ? roundLength : 2 * timeout) + timeout;
+
+        for (String id : crashed)
+        {
+            simulation.scheduleAt((long) (simulation.getRandom().nextDouble() * expectedDuration), participants.get(id)::crash);
+        }
+
+        simulation.run();
+
+        return new Result(election, new ArrayList<>(participants.values()), crashed.size());
+    }
+
+    // Deliver a message after the link's latency, but never ahead of an earlier message on the same connection, as TCP would. Nothing
+    // sent after the sender crashed arrives.
+    public void send(String sender, String receiver, List<Vote> votes, long departure)
+    {
+        ModelParticipant from = participants.get(sender);
+        ModelParticipant to = participants.get(receiver);
+
+        if (votes != ModelParticipant.CLOSED && from.getCrashTime() <= departure)
+            return;
+
+        long arrival = from.arrivalAfter(receiver, departure + latencyModel.sample(sender, receiver, simulation.getRandom()));
+
+        simulation.scheduleAt(arrival, () -> {
+            if (votes == ModelParticipant.CLOSED || from.getCrashTime() > departure)
+                to.receive(sender, votes);
+        });
+    }
+
+    public boolean hasCrashed(String participant)
+    {
+        return participants.get(participant).isCrashed();
+    }
+
+    public Simulation getSimulation()
+    {
+        return simulation;
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    // Unscheduled rounds start a timeout after the last one ended, as Election sleeps between them.
+    public long getRoundDelay()
+    {
+        return timeout;
+    }
+
+    public boolean isScheduled()
+    {
+        return scheduled;
+    }
+
+    public long getRoundLength()
+    {
+        return roundLength;
+    }
+
+    public long getSendCost()
+    {
+        return sendCost;
+    }
+
+    public long sampleLatency(String from, String to)
+    {
+        return latencyModel.sample(from, to, simulation.getRandom());
+    }
+
+    public class Result
+    {
+        private final int election;
+        private final List<ModelParticipant> survivors = new ArrayList<>();
+        private final int crashesInjected;
+        private long duration = 0;
+        private int crashesDetected = 0;
+        private int falseCrashes = 0;
+
+        public Result(int election, List<ModelParticipant> participants, int crashesInjected)
+        {
+            this.election = election;
+            this.crashesInjected = crashesInjected;
+
+            for (ModelParticipant participant : participants)
+            {
+                crashesDetected += participant.getCrashesDetected();
+                falseCrashes += participant.getFalseCrashes();
+
+                if (participant.getDecidedAt() < 0)
+                    continue;
+
+                survivors.add(participant);
+                duration = Math.max(duration, participant.getDecidedAt() + sampleLatency(participant.getParticipant(), COORDINATOR));
+            }
+        }
+
+        public boolean isAgreed()
+        {
+            return survivors.stream().map(ModelParticipant::getOutcome).distinct().count() <= 1;
+        }
+
+        public long getDuration()
+        {
+            return duration;
+        }
+
+        public int getCrashesDetected()
+        {
+            return crashesDetected;
+        }
+
+        public int getFalseCrashes()
+        {
+            return falseCrashes;
+        }
+
+        public List<ModelParticipant> getSurvivors()
+        {
+            return survivors;
+        }
+
+        public void update(CRC32 digest)
+        {
+            for (ModelParticipant participant : survivors)
+            {
+                digest.update((election + " " + participant.getParticipant() + " " + participant.getOutcome() + " "
+                        + participant.getDecidedAt() + "\n").getBytes());
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder description = new StringBuilder("election ").append(election).append(": ");
+
+            Map<String, Integer> outcomes = new TreeMap<>();
+            survivors.forEach(participant -> outcomes.merge(participant.getOutcome(), 1, Integer::sum));
+
+            description.append(outcomes).append(isAgreed() ? " agreed" : " DISAGREED")
+                    .append(String.format(" in %.1f ms", duration / 1e3))
+                    .append(", ").append(crashesInjected).append(" crashed, ")
+                    .append(crashesDetected).append(" crash detections, ")
+                    .append(falseCrashes).append(" false");
+
+            return description.toString();
+        }
+    }
+}
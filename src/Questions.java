@@ -0,0 +1,81 @@
+import java.util.*;
+
+// Several independent questions can be put to the participants in one election, their option lists separated by a | among the vote
+// options (A B C | X Y asks two questions). A vote then makes one choice per question, joined the same way (A|X), so that it is sent,
+// tallied, cached and logged just as a single choice is, while each question is decided on its own from the choices made for it.
+public final class Questions
+{
+    public static final String SEPARATOR = "|";
+
+    private Questions() { }
+
+    // The option list of each question, in order. Options with no separator are a single question.
+    public static List<List<String>> split(List<String> options)
+    {
+        List<List<String>> questions = new ArrayList<>();
+        List<String> question = new ArrayList<>();
+
+        for (String option : options)
+        {
+            if (option.equals(SEPARATOR))
+            {
+                questions.add(question);
+                question = new ArrayList<>();
+            }
+            else
+                question.add(option);
+        }
+
+        questions.add(question);
+
+        return questions;
+    }
+
+    // Options are sent and voted on as bare tokens, so none may take a form that means something else on the wire: a leading # marks
+    // the hash of an option set, or an option sent by its position, and = and , write out a polling station's counts.
+    public static void checkOptions(List<String> options) throws IllegalArgumentException
+    {
+        for (String option : options)
+        {
+            if (option.startsWith("#"))
+                throw new IllegalArgumentException("Vote option " + option + " may not start with #.");
+
+            if (option.contains("=") || option.contains(","))
+                throw new IllegalArgumentException("Vote option " + option + " may not contain = or ,.");
+        }
+    }
+
+    public static List<String> getChoices(String vote)
+    {
+        return Arrays.asList(vote.split("\\" + SEPARATOR, -1));
+    }
+
+    public static String join(List<String> choices)
+    {
+        return String.join(SEPARATOR, choices);
+    }
+
+    // The counts of each question's choices, from the counts of whole votes. There is always at least one question, even with no votes.
+    public static List<Map<String, Long>> tallyByQuestion(Map<String, Long> counts)
+    {
+        List<Map<String, Long>> questionCounts = new ArrayList<>();
+
+        for (Map.Entry<String, Long> count : counts.entrySet())
+        {
+            List<String> choices = getChoices(count.getKey());
+
+            for (int question = 0; question < choices.size(); question++)
+            {
+                if (question == questionCounts.size())
+                    questionCounts.add(new TreeMap<>());
+
+                questionCounts.get(question).merge(choices.get(question), count.getValue(), Long::sum);
+            }
+        }
+
+        if (questionCounts.isEmpty())
+            questionCounts.add(new TreeMap<>());
+
+        return questionCounts;
+    }
+}
@@ -0,0 +1,281 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// The root of a hierarchy of coordinators. Each sub-coordinator (a Coordinator started with -Dcoordinator.parent=<root host:port>, whose
+// participants run with -Dparticipant.reportTally=true) holds the election for its own shard of the participants, so that a DETAILS only
+// lists the shard rather than everyone. It then forwards the shard's per-option counts and voters here, where they are merged into the
+// outcome that a single Coordinator's participants would have decided over everyone.
+public class RootCoordinator
+{
+    private final int portNumber;
+    private final int loggerPort;
+    private final int numberOfShards;
+    private final int timeout;
+    private final int numberOfElections;
+    private final List<String> options;
+
+    private final ServerSocket serverSocket;
+    private final List<ShardThread> shards = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch joinBarrier;
+
+    // Marks the end of a shard's tallies, once its connection has closed.
+    private static final Tally CLOSED = new Tally();
+
+    private final CoordinatorLogger logger;
+
+    public RootCoordinator(int portNumber, int loggerPort, int numberOfShards, int timeout, List<String> options)
+    {
+        this.portNumber = portNumber;
+        this.loggerPort = loggerPort;
+        this.numberOfShards = numberOfShards;
+        this.timeout = timeout;
+        Questions.checkOptions(options);
+        this.options = options;
+        this.numberOfElections = Settings.getNumberOfElections();
+        this.joinBarrier = new CountDownLatch(numberOfShards);
+
+        CoordinatorLogger tempLogger;
+
+        try
+        {
+            CoordinatorLogger.initLogger(this.loggerPort, this.portNumber, this.timeout);
+            tempLogger = CoordinatorLogger.getLogger();
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            tempLogger = null;
+        }
+
+        this.logger = tempLogger;
+        this.serverSocket = initialise(portNumber);
+    }
+
+    public static void main(String[] args)
+    {
+        List<String> options = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 4; i < args.length; i++) { options.add(args[i]); }
+
+        RootCoordinator coordinator = new RootCoordinator(Integer.parseInt(args[0]),
+                Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]),
+                options);
+
+        coordinator.run();
+    }
+
+    public void run()
+    {
+        for (int i = 0; i < numberOfShards; i++)
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                logger.connectionAccepted(Address.of(socket));
+
+                ShardThread shard = new ShardThread(socket);
+                shards.add(shard);
+                shard.start();
+            }
+            catch (IOException ex)
+            {
+                ex.printStackTrace();
+                joinBarrier.countDown();
+            }
+        }
+
+        try
+        {
+            joinBarrier.await();
+        }
+        catch (InterruptedException ex)
+        {
+            ex.printStackTrace();
+            return;
+        }
+
+        List<ShardThread> joinedShards;
+
+        synchronized (shards)
+        {
+            joinedShards = new ArrayList<>(shards);
+        }
+
+        // The shards hold their elections independently, so each shard's tallies are taken in order from that shard alone.
+        for (int election = 1; election <= numberOfElections; election++)
+        {
+            Tally combined = new Tally();
+
+            for (ShardThread shard : joinedShards)
+            {
+                Tally shardTally = shard.nextTally();
+
+                if (shardTally == null)
+                    continue;
+
+                // A voter counted by two shards means the shards overlap, and neither count can be trusted to add up.
+                if (!combined.merge(shardTally))
+                    System.out.println("Tally from shard '" + shard.shardId + "' overlaps another shard's voters, so it was left out.");
+            }
+
+            String outcome = combined.getLeader();
+            logger.outcomeDecided(outcome == null ? "" : outcome, combined.getVoters());
+
+            joinedShards.forEach(shard -> shard.sendResult(combined));
+        }
+
+        try
+        {
+            serverSocket.close();
+
+            for (ShardThread shard : joinedShards)
+            {
+                shard.socket.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    private ServerSocket initialise(int portNumber)
+    {
+        try
+        {
+            ServerSocket socket = new ServerSocket(portNumber);
+            logger.startedListening(portNumber);
+
+            return socket;
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    private class ShardThread extends Thread
+    {
+        private final Socket socket;
+        private BufferedReader in;
+        private PrintStream out;
+
+        private String shardId;
+        private final BlockingQueue<Tally> tallies = new LinkedBlockingQueue<>();
+
+        public ShardThread(Socket socket)
+        {
+            this.socket = socket;
+            this.shardId = Address.of(socket);
+
+            try
+            {
+                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                out = new PrintStream(socket.getOutputStream());
+            }
+            catch (IOException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            MessageParser parser = new MessageParser();
+
+            try
+            {
+                try
+                {
+                    // A sub-coordinator that does not register in time is left out of every election.
+                    socket.setSoTimeout(timeout);
+
+                    String joinMessage = in.readLine();
+                    logger.messageReceived(shardId, joinMessage);
+                    shardId = parser.parseJoinRequest(joinMessage);
+                    logger.joinReceived(shardId);
+
+                    socket.setSoTimeout(0);
+                    sendVoteOptions();
+                }
+                catch (SocketTimeoutException ex)
+                {
+                    logger.participantCrashed(shardId);
+                    socket.close();
+                }
+                finally
+                {
+                    joinBarrier.countDown();
+                }
+
+                String message;
+
+                while ((message = in.readLine()) != null)
+                {
+                    logger.messageReceived(shardId, message);
+                    tallies.add(parser.parseTally(message, MessageType.TALLY));
+                }
+            }
+            catch (IOException ex)
+            {
+                if (!socket.isClosed())
+                    ex.printStackTrace();
+            }
+
+            tallies.add(CLOSED);
+        }
+
+        // The shard's tally for the next election, or null once the shard has gone.
+        public Tally nextTally()
+        {
+            try
+            {
+                Tally tally = tallies.take();
+
+                if (tally != CLOSED)
+                    return tally;
+
+                tallies.add(CLOSED);
+            }
+            catch (InterruptedException ex)
+            {
+                ex.printStackTrace();
+            }
+
+            return null;
+        }
+
+        private void sendVoteOptions()
+        {
+            StringBuilder message = new StringBuilder("VOTE_OPTIONS ");
+
+            synchronized (options)
+            {
+                for (String option : options) {
+                    message.append(option).append(" ");
+                }
+
+                out.println(message.toString().trim());
+                logger.voteOptionsSent(shardId, options);
+            }
+
+            logger.messageSent(shardId, message.toString().trim());
+        }
+
+        public void sendResult(Tally combined)
+        {
+            if (socket.isClosed())
+                return;
+
+            String message = combined.toMessage(MessageType.TALLY_RESULT);
+
+            out.println(message);
+            logger.messageSent(shardId, message);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+// Optional tuning read from JVM system properties (e.g. -Delection.mode=gossip), so that the command line arguments
+// expected by the Coordinator and Participant stay unchanged.
+public final class Settings
+{
+    private Settings() { }
+
+    public static ElectionMode getElectionMode()
+    {
+        return ElectionMode.valueOf(getString("election.mode", ElectionMode.FULL_MESH.name()).toUpperCase());
+    }
+
+    public static int getGossipFanout()
+    {
+        return getInt("gossip.fanout", 3);
+    }
+
+    public static double getGossipProbability()
+    {
+        double probability = getDouble("gossip.probability", 0.999);
+
+        // The number of rounds only bounds the chance of a miss strictly between certainty and none.
+        if (!(probability > 0 && probability < 1))
+            throw new IllegalArgumentException("gossip.probability must be between 0 and 1, exclusive, not " + probability + ".");
+
+        return probability;
+    }
+
+    public static boolean isGossipPullEnabled()
+    {
+        return getBoolean("gossip.pull", false);
+    }
+
+    public static String getMulticastGroup()
+    {
+        return getString("multicast.group", "239.255.0.1");
+    }
+
+    public static int getMulticastPort()
+    {
+        return getInt("multicast.port", 4446);
+    }
+
+    public static String getMulticastInterface()
+    {
+        return getString("multicast.interface", null);
+    }
+
+    public static int getMulticastTimeToLive()
+    {
+        return getInt("multicast.ttl", 1);
+    }
+
+    public static String getFailureDetector()
+    {
+        return getString("failure.detector", "timeout").toLowerCase();
+    }
+
+    public static double getPhiThreshold()
+    {
+        return getDouble("failure.phiThreshold", 8.0);
+    }
+
+    public static int getPhiSampleSize()
+    {
+        return getInt("failure.phiSampleSize", 200);
+    }
+
+    public static double getPhiMinStdDeviation(int timeout)
+    {
+        return getDouble("failure.phiMinStdDeviation", Math.max(1, timeout / 50));
+    }
+
+    // Heartbeats are only worth sending when the failure detector can learn from their arrival times.
+    public static int getHeartbeatInterval(int timeout)
+    {
+        return getInt("failure.heartbeatInterval", getFailureDetector().equals("phi") ? Math.max(1, timeout / 10) : 0);
+    }
+
+    // The address this participant listens on, and is known to everyone else by. Give each participant its own 127.0.0.x to try out
+    // several hosts on one machine.
+    public static String getParticipantHost()
+    {
+        return getString("participant.host", "localhost");
+    }
+
+    // Listen this far above the port in a participant's ID, so that a FaultProxy can take the connections made to the ID's port.
+    public static int getListenPortOffset()
+    {
+        return getInt("participant.listenPortOffset", 0);
+    }
+
+    public static String getCoordinatorHost()
+    {
+        return getString("coordinator.host", "localhost");
+    }
+
+    // Send each option set in full only once per participant, and from then on just its hash, with votes naming options by position.
+    public static boolean isOptionSetCacheEnabled()
+    {
+        return getBoolean("options.cache", false);
+    }
+
+    // Where participants keep a copy of the option sets they have been sent, or null to keep them in memory only.
+    public static String getOptionSetCacheDirectory()
+    {
+        return getString("options.cacheDirectory", null);
+    }
+
+    // Offer to compress the messages on each connection, which is only done if the other end accepts.
+    public static boolean isCompressionEnabled()
+    {
+        return getBoolean("connection.compression", false);
+    }
+
+    // Messages shorter than this many characters are sent as they are, as deflating them would not save anything.
+    public static int getCompressionThreshold()
+    {
+        return getInt("compression.threshold", 256);
+    }
+
+    public static int getCoordinatorBacklog(int numberOfParticipants)
+    {
+        return getInt("coordinator.backlog", Math.max(50, numberOfParticipants));
+    }
+
+    // How many participants take part in the elections a ParticipantHost's participants are in, counting those hosted elsewhere.
+    public static int getHostElectionSize(int hostedParticipants)
+    {
+        return getInt("host.electionSize", hostedParticipants);
+    }
+
+    // The most threads a ParticipantHost will let its participants' connections take, before refusing to start them.
+    public static int getHostMaxThreads()
+    {
+        return getInt("host.maxThreads", 8192);
+    }
+
+    public static int getCoordinatorAcceptThreads()
+    {
+        return getInt("coordinator.acceptThreads", 4);
+    }
+
+    public static int getCoordinatorBroadcastThreads()
+    {
+        return getInt("coordinator.broadcastThreads", 4);
+    }
+
+    public static int getNumberOfElections()
+    {
+        return getInt("coordinator.elections", 1);
+    }
+
+    // How many participants have to report the same outcome for the Coordinator to call the election complete (by default, all of them).
+    public static int getOutcomeQuorum(int electorate)
+    {
+        return getInt("coordinator.quorum", electorate);
+    }
+
+    // The local TCP port where the Coordinator answers every connection with the results so far, or 0 for none.
+    public static int getResultQueryPort()
+    {
+        return getInt("coordinator.queryPort", 0);
+    }
+
+    // The host:port of the root coordinator that a sub-coordinator forwards its shard's tallies to, or null for a standalone coordinator.
+    public static String getCoordinatorParent()
+    {
+        return getString("coordinator.parent", null);
+    }
+
+    // Participants in a shard send the Coordinator their full tally along with their outcome, for it to forward to the root.
+    public static boolean isTallyReportEnabled()
+    {
+        return getBoolean("participant.reportTally", false);
+    }
+
+    public static boolean isParticipantPersistent()
+    {
+        return getBoolean("participant.persistent", false);
+    }
+
+    public static boolean isWriteAheadLogEnabled()
+    {
+        return getBoolean("participant.wal", false);
+    }
+
+    public static String getWriteAheadLogDirectory()
+    {
+        return getString("wal.directory", ".");
+    }
+
+    public static int getWriteAheadLogSize()
+    {
+        return getInt("wal.size", 1 << 20);
+    }
+
+    // Where participants standing for polling stations find their ballots, in ballots_<host>_<port>.txt, or null if none do.
+    public static String getBallotDirectory()
+    {
+        return getString("participant.ballots", null);
+    }
+
+    // How long the Coordinator waits for restarted participants to rejoin and report, once everyone else has reported.
+    public static int getRejoinWindow(int timeout, int numberOfParticipants)
+    {
+        return getInt("coordinator.rejoinWindow", timeout * (numberOfParticipants + 1));
+    }
+
+    public static boolean isScheduleEnabled()
+    {
+        return getBoolean("election.schedule", false);
+    }
+
+    public static int getRoundLength(int timeout)
+    {
+        return getInt("election.roundLength", timeout);
+    }
+
+    // How far ahead of sending VOTE_OPTIONS the first round is scheduled, leaving time to set up the connections between participants.
+    public static int getScheduleLead(int timeout)
+    {
+        return getInt("election.scheduleLead", timeout);
+    }
+
+    // With a seed, every participant's votes follow from the seed and its ID, so that a run (or a simulation of it) can be repeated.
+    public static Long getElectionSeed()
+    {
+        String value = System.getProperty("election.seed");
+        return value == null ? null : Long.parseLong(value.trim());
+    }
+
+    // Stamp log records with a monotonic time and a Lamport clock, carried on the messages between processes, for TraceAnalyzer.
+    public static boolean isTraceEnabled()
+    {
+        return getBoolean("trace.enabled", false);
+    }
+
+    // Several Logger processes (ports on this host, or host:port) to share the records between, by the process that made them, in
+    // place of the one given on the command line.
+    public static String getLoggerEndpoints()
+    {
+        return getString("logger.endpoints", null);
+    }
+
+    // How many records a Logger process writes to each segment of its log before starting the next, or 0 to write one file.
+    public static int getLoggerSegmentRecords()
+    {
+        return getInt("logger.segmentRecords", 0);
+    }
+
+    // The local TCP port where a Logger process takes subscribers to the records it writes, or 0 for none.
+    public static int getLoggerSubscriberPort()
+    {
+        return getInt("logger.subscriberPort", 0);
+    }
+
+    // How many of its latest records a Logger process keeps in memory for new subscribers.
+    public static int getLoggerRingSize()
+    {
+        return getInt("logger.ringSize", 1024);
+    }
+
+    // How many records a subscriber may fall behind by before it is disconnected.
+    public static int getLoggerSubscriberQueue()
+    {
+        return getInt("logger.subscriberQueue", 1024);
+    }
+
+    public static boolean isEarlyOutcomeEnabled()
+    {
+        return getBoolean("election.earlyOutcome", false);
+    }
+
+    public static String getString(String key, String defaultValue)
+    {
+        return System.getProperty(key, defaultValue);
+    }
+
+    public static int getInt(String key, int defaultValue)
+    {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public static long getLong(String key, long defaultValue)
+    {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public static double getDouble(String key, double defaultValue)
+    {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue)
+    {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
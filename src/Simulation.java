@@ -0,0 +1,70 @@
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// A single-threaded discrete-event scheduler with a virtual clock, in microseconds. Events run in order of their time, and events due
+// at the same time in the order they were scheduled, so that with the same seed a simulation always runs exactly the same way.
+public class Simulation
+{
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final Random random;
+
+    private long now = 0;
+    private long sequence = 0;
+
+    public Simulation(long seed)
+    {
+        this.random = new Random(seed);
+    }
+
+    public long now()
+    {
+        return now;
+    }
+
+    public Random getRandom()
+    {
+        return random;
+    }
+
+    public void schedule(long delay, Runnable action)
+    {
+        events.add(new Event(now + Math.max(0, delay), sequence++, action));
+    }
+
+    public void scheduleAt(long time, Runnable action)
+    {
+        schedule(time - now, action);
+    }
+
+    // Run until there is nothing left to happen.
+    public void run()
+    {
+        Event event;
+
+        while ((event = events.poll()) != null)
+        {
+            now = event.time;
+            event.action.run();
+        }
+    }
+
+    private static class Event implements Comparable<Event>
+    {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        public Event(long time, long sequence, Runnable action)
+        {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other)
+        {
+            return time != other.time ? Long.compare(time, other.time) : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.*;
+
+public class Tally
+{
+    private final Map<String, Long> counts = new TreeMap<>();
+    private final Set<String> voters = new TreeSet<>(Address.ORDER);
+
+    public synchronized boolean add(Vote vote)
+    {
+        if (!voters.add(vote.getParticipant()))
+            return false;
+
+        counts.merge(vote.getVote(), 1L, Long::sum);
+
+        return true;
+    }
+
+    // Partial tallies carry counts rather than individual votes, so they can only be combined when no voter is counted in both.
+    public synchronized boolean merge(Tally other)
+    {
+        Map<String, Long> otherCounts = other.getCounts();
+        List<String> otherVoters = other.getVoters();
+
+        if (otherVoters.stream().anyMatch(voters::contains))
+            return false;
+
+        voters.addAll(otherVoters);
+        otherCounts.forEach((option, count) -> counts.merge(option, count, Long::sum));
+
+        return true;
+    }
+
+    public synchronized void addCount(String option, long count)
+    {
+        counts.merge(option, count, Long::sum);
+    }
+
+    public synchronized void addVoter(String voter)
+    {
+        voters.add(voter);
+    }
+
+    public synchronized void clear()
+    {
+        counts.clear();
+        voters.clear();
+    }
+
+    // The option with the most votes so far, ties going to the earliest option in lexicographic order, or null before any vote. With
+    // several questions, this is the leading choice of each, joined as a vote would be.
+    public synchronized String getLeader()
+    {
+        if (counts.isEmpty())
+            return null;
+
+        List<String> leaders = new ArrayList<>();
+
+        for (Map<String, Long> questionCounts : Questions.tallyByQuestion(BallotBox.weigh(counts)))
+        {
+            leaders.add(getLeader(questionCounts));
+        }
+
+        return Questions.join(leaders);
+    }
+
+    private static String getLeader(Map<String, Long> counts)
+    {
+        String leader = null;
+
+        for (Map.Entry<String, Long> count : counts.entrySet())
+        {
+            if (leader == null || count.getValue() > counts.get(leader))
+                leader = count.getKey();
+        }
+
+        return leader;
+    }
+
+    // How many votes the leader is ahead of the runner-up by (or of nothing, if it is the only option voted for), on the closest
+    // question.
+    public synchronized long getMargin()
+    {
+        if (counts.isEmpty())
+            return 0;
+
+        long margin = Long.MAX_VALUE;
+
+        for (Map<String, Long> questionCounts : Questions.tallyByQuestion(BallotBox.weigh(counts)))
+        {
+            String leader = getLeader(questionCounts);
+
+            long runnerUp = questionCounts.entrySet().stream()
+                    .filter(count -> !count.getKey().equals(leader))
+                    .mapToLong(Map.Entry::getValue)
+                    .max()
+                    .orElse(0);
+
+            margin = Math.min(margin, questionCounts.get(leader) - runnerUp);
+        }
+
+        return margin;
+    }
+
+    // Whether the leader has won whatever the outstanding voters choose: even if they all back one other option, that option can at
+    // best draw level, and only wins the tie-break if it sorts before the leader. Every question has to be decided. Nothing is decided
+    // early once a polling station has voted, as an outstanding one could carry any number of ballots. Whether any station is taking
+    // part at all is only known from the DETAILS, and a Participant does not ask at all when they say one is.
+    public synchronized boolean isDecided(int outstanding, Collection<String> options)
+    {
+        if (counts.isEmpty() || (outstanding > 0 && counts.keySet().stream().anyMatch(BallotBox::isWeighted)))
+            return false;
+
+        List<Map<String, Long>> questionCounts = Questions.tallyByQuestion(BallotBox.weigh(counts));
+        List<List<String>> questionOptions = Questions.split(new ArrayList<>(options));
+
+        for (int question = 0; question < questionCounts.size(); question++)
+        {
+            Collection<String> rivals = question < questionOptions.size() ? questionOptions.get(question) : Collections.emptyList();
+
+            if (!isDecided(questionCounts.get(question), outstanding, rivals))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isDecided(Map<String, Long> counts, int outstanding, Collection<String> options)
+    {
+        String leader = getLeader(counts);
+        long leaderCount = counts.get(leader);
+
+        Set<String> rivals = new TreeSet<>(options);
+        rivals.addAll(counts.keySet());
+        rivals.remove(leader);
+
+        for (String rival : rivals)
+        {
+            long best = counts.getOrDefault(rival, 0L) + outstanding;
+
+            if (best > leaderCount || (best == leaderCount && rival.compareTo(leader) < 0))
+                return false;
+        }
+
+        return true;
+    }
+
+    public synchronized int getVoterCount()
+    {
+        return voters.size();
+    }
+
+    public synchronized Map<String, Long> getCounts()
+    {
+        return new TreeMap<>(counts);
+    }
+
+    public synchronized List<String> getVoters()
+    {
+        return new ArrayList<>(voters);
+    }
+
+    // The counts and then the voters, in the form MessageParser.parseTally reads back.
+    public synchronized String toMessage(MessageType type)
+    {
+        StringBuilder message = new StringBuilder(type.name()).append(" ").append(counts.size()).append(" ");
+
+        for (Map.Entry<String, Long> count : counts.entrySet())
+        {
+            message.append(count.getKey()).append(" ")
+                    .append(count.getValue()).append(" ");
+        }
+
+        for (String voter : voters)
+        {
+            message.append(voter).append(" ");
+        }
+
+        return message.toString().trim();
+    }
+}
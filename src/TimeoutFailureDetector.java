@@ -0,0 +1,35 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Suspects a process once nothing has been heard from it for a fixed timeout, which is how crashes have always been detected.
+public class TimeoutFailureDetector implements FailureDetector
+{
+    private final long timeout;
+    private final Map<String, Long> lastHeartbeats = new ConcurrentHashMap<>();
+
+    public TimeoutFailureDetector(long timeout)
+    {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void heartbeat(String process)
+    {
+        lastHeartbeats.put(process, System.nanoTime());
+    }
+
+    @Override
+    public boolean isSuspected(String process)
+    {
+        Long lastHeartbeat = lastHeartbeats.get(process);
+
+        return lastHeartbeat != null && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeartbeat) > timeout;
+    }
+
+    @Override
+    public void remove(String process)
+    {
+        lastHeartbeats.remove(process);
+    }
+}
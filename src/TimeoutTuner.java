@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Picks the timeout from data rather than by guesswork. The message latencies of a recorded run (traced, or else as the logger received
+// its records) are replayed through the ProtocolModel under each timeout given, both with rounds that start a timeout after the
+// last one ended and with scheduled rounds a timeout long, and for each it reports how long elections would take against how often a
+// participant that had not crashed would be taken for crashed. The figures come from ProtocolModel, not from running Election itself,
+// so they are only as good as that model of the full-mesh rounds.
+//
+// Usage: TimeoutTuner <log file...>
+// with -Dtuning.timeouts=<ms,...> (by default, multiples of the slowest 1% of latencies), -Dtuning.elections=<per setting>,
+// -Dtuning.participants=<how many> (as many as were recorded), -Dtuning.seed=<seed>, -Dtuning.falseCrashRate=<acceptable false
+// crashes per election>, and -Dsimulation.crashes=<per election> for real crashes to be detected as well.
+public class TimeoutTuner
+{
+    private static final List<String> OPTIONS = Arrays.asList("A", "B", "C");
+
+    public static void main(String[] args)
+    {
+        TraceAnalyzer analyzer = new TraceAnalyzer(0);
+
+        try
+        {
+            for (String file : args)
+            {
+                analyzer.load(Paths.get(file));
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Could not read the log: " + ex.getMessage());
+            return;
+        }
+
+        analyzer.analyse();
+
+        EmpiricalLatencyModel latencyModel;
+
+        try
+        {
+            latencyModel = new EmpiricalLatencyModel(analyzer.getLatencies(), TraceAnalyzer.COORDINATOR);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            return;
+        }
+
+        int numberOfParticipants = Settings.getInt("tuning.participants", Math.max(2, analyzer.getParticipants().size()));
+        int numberOfElections = Settings.getInt("tuning.elections", 200);
+        long seed = Settings.getLong("tuning.seed", 1);
+        double acceptableFalseCrashes = Settings.getDouble("tuning.falseCrashRate", 0.01);
+
+        System.out.println(String.format("observed latencies (ms): coordinator links %d, p50 %.3f, p99 %.3f, max %.3f; participant links %d, p50 %.3f, p99 %.3f, max %.3f",
+                latencyModel.getSampleCount(true), latencyModel.getQuantile(true, 0.5) / 1e3, latencyModel.getQuantile(true, 0.99) / 1e3,
+                latencyModel.getQuantile(true, 1) / 1e3, latencyModel.getSampleCount(false), latencyModel.getQuantile(false, 0.5) / 1e3,
+                latencyModel.getQuantile(false, 0.99) / 1e3, latencyModel.getQuantile(false, 1) / 1e3));
+        System.out.println(numberOfParticipants + " participants, " + numberOfElections + " elections per setting, seed " + seed);
+        System.out.println();
+        System.out.println("policy        timeout ms   mean ms    p95 ms   false crashes/election   with a false crash   agreed");
+
+        Map<Boolean, String> recommendations = new TreeMap<>();
+
+        for (boolean scheduled : new boolean[] { false, true })
+        {
+            for (int timeout : getTimeouts(latencyModel))
+            {
+                ProtocolModel model = new ProtocolModel(numberOfParticipants, timeout, seed, OPTIONS, latencyModel, scheduled, timeout);
+                List<Long> durations = new ArrayList<>();
+                int falseCrashes = 0;
+                int electionsWithFalseCrashes = 0;
+                int agreed = 0;
+
+                for (int election = 1; election <= numberOfElections; election++)
+                {
+                    ProtocolModel.Result result = model.simulateElection(election);
+
+                    durations.add(result.getDuration());
+                    falseCrashes += result.getFalseCrashes();
+                    electionsWithFalseCrashes += result.getFalseCrashes() > 0 ? 1 : 0;
+                    agreed += result.isAgreed() ? 1 : 0;
+                }
+
+                Collections.sort(durations);
+
+                double mean = durations.stream().mapToLong(Long::longValue).average().orElse(0) / 1e3;
+                double falseCrashRate = (double) falseCrashes / numberOfElections;
+                String policy = scheduled ? "scheduled" : "unscheduled";
+
+                System.out.println(String.format("%-13s %10d %9.1f %9.1f %24.3f %19.1f%% %7.1f%%", policy, timeout, mean,
+                        durations.get((int) (0.95 * (durations.size() - 1))) / 1e3, falseCrashRate,
+                        100.0 * electionsWithFalseCrashes / numberOfElections, 100.0 * agreed / numberOfElections));
+
+                // The timeouts are tried shortest first, so the first with few enough false crashes is the quickest that will do.
+                if (falseCrashRate <= acceptableFalseCrashes && !recommendations.containsKey(scheduled))
+                    recommendations.put(scheduled, String.format("%s timeout %d ms (mean election %.1f ms)", policy, timeout, mean));
+            }
+        }
+
+        System.out.println();
+
+        if (recommendations.isEmpty())
+            System.out.println("no timeout tried keeps false crashes to " + acceptableFalseCrashes + " per election");
+        else
+            recommendations.values().forEach(recommendation -> System.out.println("recommended: " + recommendation));
+    }
+
+    private static List<Integer> getTimeouts(EmpiricalLatencyModel latencyModel)
+    {
+        String timeouts = Settings.getString("tuning.timeouts", null);
+        SortedSet<Integer> candidates = new TreeSet<>();
+
+        if (timeouts != null)
+        {
+            for (String timeout : timeouts.split(","))
+            {
+                candidates.add(Integer.parseInt(timeout.trim()));
+            }
+        }
+        else
+        {
+            long slowest = Math.max(latencyModel.getQuantile(true, 0.99), latencyModel.getQuantile(false, 0.99));
+
+            for (double multiple : new double[] { 0.5, 1, 1.5, 2, 3, 5, 10 })
+            {
+                candidates.add((int) Math.max(1, Math.ceil(multiple * slowest / 1e3)));
+            }
+        }
+
+        return new ArrayList<>(candidates);
+    }
+}
@@ -0,0 +1,521 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Rebuilds what happened in a traced run (-Dtrace.enabled=true) from the UDPLoggerServer's log, or from the logs the Coordinator and
+// participants keep themselves, and reports what held each election up. Every send is paired with the receive it caused, in order on
+// each connection as TCP delivers them, and each election's critical path is followed back from the last outcome the Coordinator
+// received: from a receive to the send that caused it if that came after the receiver's own previous event, and otherwise to that
+// event. It then reports, round by round, how much slack the votes had before they held up the round, and the slowest participants
+// and links.
+//
+// Logs from an untraced run can be read too, but only by the times the logger received each record at. Every election mode is traced,
+// but a message is only paired when its receiver logs it from the sender's ID: the tallies of aggregation, which arrive on connections
+// of their own, and multicast datagrams are left unmatched, so the critical path of those modes stops short at them.
+//
+// Usage: TraceAnalyzer <log file...> with -Dtrace.top=<how many participants and links to list> (10 by default)
+public class TraceAnalyzer
+{
+    public static final String COORDINATOR = "C";
+
+    private static final Pattern RECORD = Pattern.compile("^\\[(C|[^\\]\\s]+:\\d+)\\](?: \\d+)? t=(\\d+) lc=(\\d+) (.*)$");
+
+    // A record from an untraced run, with only the time the logger received it.
+    private static final Pattern LOGGED_RECORD = Pattern.compile("^\\[(C|[^\\]\\s]+:\\d+)\\] (\\d+) (.*)$");
+
+    // Messages are paired by the records of them being sent and received, but a JOIN is received before the Coordinator knows who from.
+    private static final Pattern JOIN_SENT = Pattern.compile("^JOIN sent to Coordinator");
+    private static final Pattern JOIN_RECEIVED = Pattern.compile("^JOIN received from (\\S+)");
+    private static final Pattern MESSAGE_SENT = Pattern.compile("^message sent to (\\S+): \"(\\w+)");
+    private static final Pattern MESSAGE_RECEIVED = Pattern.compile("^message received from (\\S+): \"(\\w+)");
+    private static final Pattern BEGIN_ROUND = Pattern.compile("^begin round (\\d+)");
+    private static final Pattern END_ROUND = Pattern.compile("^end round (\\d+)");
+    private static final Pattern LISTENING = Pattern.compile("^started listening on port (\\d+)");
+
+    private final Map<String, List<Event>> processes = new TreeMap<>();
+    private final Map<String, List<Event>> sends = new HashMap<>();
+    private final Map<String, List<Event>> receives = new HashMap<>();
+    private final int top;
+
+    private String coordinatorPort;
+
+    private int records = 0;
+    private int untraced = 0;
+    private int loggerTimed = 0;
+    private int unmatched = 0;
+
+    public TraceAnalyzer(int top)
+    {
+        this.top = top;
+    }
+
+    public static void main(String[] args)
+    {
+        TraceAnalyzer analyzer = new TraceAnalyzer(Settings.getInt("trace.top", 10));
+
+        try
+        {
+            for (String file : args)
+            {
+                analyzer.load(Paths.get(file));
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Could not read the log: " + ex.getMessage());
+            return;
+        }
+
+        analyzer.analyse();
+        System.out.print(analyzer.report());
+    }
+
+    public void load(Path file) throws IOException
+    {
+        // The logger may have been sent a record more than once, when its ACK was lost, so each process's clock value is kept only once.
+        Set<String> seen = new HashSet<>();
+
+        processes.values().forEach(events -> events.forEach(event -> seen.add(event.process + " " + event.lamport)));
+
+        for (String line : Files.readAllLines(file))
+        {
+            Matcher record = RECORD.matcher(line.trim());
+            Matcher loggedRecord = LOGGED_RECORD.matcher(line.trim());
+            Event event;
+
+            if (record.matches())
+                event = new Event(record.group(1), Long.parseLong(record.group(2)), Long.parseLong(record.group(3)), record.group(4));
+            // Without a clock to tell them apart, such records are taken in the order they were logged, which is the order each
+            // process sent them in.
+            else if (loggedRecord.matches())
+            {
+                event = new Event(loggedRecord.group(1), 1000 * Long.parseLong(loggedRecord.group(2)), 0, loggedRecord.group(3));
+                loggerTimed++;
+            }
+            else
+            {
+                untraced += line.trim().isEmpty() ? 0 : 1;
+                continue;
+            }
+
+            if (event.lamport > 0 && !seen.add(event.process + " " + event.lamport))
+                continue;
+
+            event.sequence = records++;
+            processes.computeIfAbsent(event.process, key -> new ArrayList<>()).add(event);
+        }
+    }
+
+    public void analyse()
+    {
+        // Participants know the Coordinator by its address rather than as C.
+        for (Event event : processes.getOrDefault(COORDINATOR, Collections.emptyList()))
+        {
+            Matcher listening = LISTENING.matcher(event.text);
+
+            if (listening.find())
+                coordinatorPort = listening.group(1);
+        }
+
+        for (List<Event> events : processes.values())
+        {
+            // Records from a process's threads can reach the log in any order, but never ahead of their own clock.
+            events.sort(Comparator.comparingLong((Event event) -> event.time).thenComparingLong(event -> event.lamport)
+                    .thenComparingInt(event -> event.sequence));
+
+            int election = 0;
+            int round = 0;
+
+            for (int i = 0; i < events.size(); i++)
+            {
+                Event event = events.get(i);
+                event.previous = i > 0 ? events.get(i - 1) : null;
+
+                classify(event);
+
+                if (event.kind.equals("DETAILS") && !event.send)
+                {
+                    election++;
+                    round = 0;
+                }
+                else if (event.kind.equals("BEGIN"))
+                    round = event.round;
+
+                event.election = election;
+
+                if (!event.kind.equals("BEGIN") && !event.kind.equals("END"))
+                    event.round = round;
+            }
+        }
+
+        // TCP delivers in order, so the nth message of a kind sent over a connection is the nth received from it.
+        for (Map.Entry<String, List<Event>> link : sends.entrySet())
+        {
+            List<Event> sent = link.getValue();
+            List<Event> received = receives.getOrDefault(link.getKey(), Collections.emptyList());
+
+            for (int i = 0; i < Math.min(sent.size(), received.size()); i++)
+            {
+                received.get(i).cause = sent.get(i);
+                sent.get(i).effect = received.get(i);
+            }
+
+            unmatched += Math.abs(sent.size() - received.size());
+        }
+
+        // The Coordinator sends each participant the DETAILS once an election, so what passes between them belongs to the election of
+        // the last DETAILS sent.
+        Map<String, Integer> elections = new HashMap<>();
+
+        for (Event event : processes.getOrDefault(COORDINATOR, Collections.emptyList()))
+        {
+            if (event.kind.equals("DETAILS"))
+                elections.merge(event.peer, 1, Integer::sum);
+
+            event.election = event.peer == null ? 0 : elections.getOrDefault(event.peer, 0);
+        }
+    }
+
+    private void classify(Event event)
+    {
+        Matcher matcher;
+
+        if (JOIN_SENT.matcher(event.text).find())
+            link(event, "JOIN", true, COORDINATOR);
+        else if ((matcher = JOIN_RECEIVED.matcher(event.text)).find())
+            link(event, "JOIN", false, peer(matcher.group(1)));
+        else if ((matcher = MESSAGE_SENT.matcher(event.text)).find() && !matcher.group(2).equals("JOIN"))
+            link(event, matcher.group(2), true, peer(matcher.group(1)));
+        else if ((matcher = MESSAGE_RECEIVED.matcher(event.text)).find() && !matcher.group(2).equals("JOIN"))
+            link(event, matcher.group(2), false, peer(matcher.group(1)));
+        else if ((matcher = BEGIN_ROUND.matcher(event.text)).find())
+        {
+            event.kind = "BEGIN";
+            event.round = Integer.parseInt(matcher.group(1));
+        }
+        else if ((matcher = END_ROUND.matcher(event.text)).find())
+        {
+            event.kind = "END";
+            event.round = Integer.parseInt(matcher.group(1));
+        }
+    }
+
+    private void link(Event event, String kind, boolean send, String peer)
+    {
+        event.kind = kind;
+        event.send = send;
+        event.peer = peer;
+
+        String link = kind + " " + (send ? event.process + " " + peer : peer + " " + event.process);
+        (send ? sends : receives).computeIfAbsent(link, key -> new ArrayList<>()).add(event);
+    }
+
+    // Participants are tagged and logged by the same host:port ID, but the Coordinator is tagged C and only logs the port it
+    // listens on.
+    private String peer(String address)
+    {
+        if (processes.containsKey(address))
+            return address;
+
+        String port = address.substring(address.lastIndexOf(':') + 1);
+
+        return port.equals(coordinatorPort) ? COORDINATOR : address;
+    }
+
+    public String report()
+    {
+        StringBuilder report = new StringBuilder();
+
+        report.append("records ").append(records).append(" from ").append(processes.size()).append(" processes");
+
+        if (untraced > 0)
+            report.append(", ").append(untraced).append(" lines without a trace stamp skipped");
+
+        if (loggerTimed > 0)
+            report.append(", ").append(loggerTimed).append(" timed only by the logger, so skewed by UDPLoggerClient queuing and retries");
+
+        if (unmatched > 0)
+            report.append(", ").append(unmatched).append(" messages unmatched");
+
+        report.append("\n");
+
+        List<Event> coordinatorEvents = processes.getOrDefault(COORDINATOR, Collections.emptyList());
+        SortedSet<Integer> elections = new TreeSet<>();
+
+        coordinatorEvents.stream().filter(event -> event.kind.equals("DETAILS")).forEach(event -> elections.add(event.election));
+
+        Map<String, Long> criticalTime = new TreeMap<>();
+
+        for (int election : elections)
+        {
+            reportElection(report, election, coordinatorEvents, criticalTime);
+        }
+
+        reportRounds(report);
+        reportParticipants(report, criticalTime);
+        reportLinks(report);
+
+        return report.toString();
+    }
+
+    private void reportElection(StringBuilder report, int election, List<Event> coordinatorEvents, Map<String, Long> criticalTime)
+    {
+        List<Event> events = coordinatorEvents.stream().filter(event -> event.election == election).collect(Collectors.toList());
+
+        Optional<Event> start = events.stream().filter(event -> event.kind.equals("DETAILS")).min(Comparator.comparingLong(event -> event.time));
+        Optional<Event> end = events.stream().filter(event -> event.kind.equals("OUTCOME")).max(Comparator.comparingLong(event -> event.time));
+
+        report.append("\nELECTION ").append(election);
+
+        if (!start.isPresent() || !end.isPresent())
+        {
+            report.append(" incomplete\n");
+            return;
+        }
+
+        report.append(String.format(" %.3f ms\n", (end.get().time - start.get().time) / 1e3));
+
+        // Walk back from the last outcome to the start of the election, and list the path the right way round, with each run of
+        // events at one process as a single step.
+        List<String> path = new ArrayList<>();
+        Event event = end.get();
+        Event runEnd = null;
+        Event longestWait = null;
+
+        // Records timed only to the millisecond can pair up into a loop, so no event is visited twice.
+        Set<Event> visited = new HashSet<>();
+
+        while (event != null && event.time >= start.get().time && event != start.get() && visited.add(event))
+        {
+            Event previous = event.previous;
+            Event cause = event.cause;
+
+            if (cause != null && (previous == null || cause.time >= previous.time))
+            {
+                addRun(path, event, runEnd, longestWait, criticalTime);
+                runEnd = null;
+
+                path.add(String.format("  %9.3f ms  %-12s %s -> %s", event.latency() / 1e3, event.kind, cause.process, event.process));
+                event = cause;
+            }
+            else if (previous != null)
+            {
+                if (runEnd == null)
+                {
+                    runEnd = event;
+                    longestWait = event;
+                }
+                else if (event.time - previous.time > longestWait.time - longestWait.previous.time)
+                    longestWait = event;
+
+                event = previous;
+            }
+            else
+                break;
+        }
+
+        addRun(path, event, runEnd, longestWait, criticalTime);
+
+        Collections.reverse(path);
+        report.append("critical path:\n");
+        path.forEach(step -> report.append(step).append("\n"));
+    }
+
+    private void addRun(List<String> path, Event runStart, Event runEnd, Event longestWait, Map<String, Long> criticalTime)
+    {
+        if (runEnd == null || runStart == null)
+            return;
+
+        long duration = runEnd.time - runStart.time;
+        criticalTime.merge(runEnd.process, duration, Long::sum);
+
+        path.add(String.format("  %9.3f ms  %-12s at %s until \"%s\", longest wait %.3f ms before \"%s\"", duration / 1e3, "local",
+                runEnd.process, shorten(runEnd.text), (longestWait.time - longestWait.previous.time) / 1e3, shorten(longestWait.text)));
+    }
+
+    private static String shorten(String text)
+    {
+        return text.length() <= 60 ? text : text.substring(0, 57) + "...";
+    }
+
+    // For each round a participant ran, the votes it was sent that round: how long after the first of them each was sent, and how long
+    // the round went on after the last one was sent (in delivery, or waiting out the timeout on a crashed participant).
+    private void reportRounds(StringBuilder report)
+    {
+        Map<Integer, Statistics> durations = new TreeMap<>();
+        Map<Integer, Statistics> slacks = new TreeMap<>();
+        Map<Integer, Statistics> tails = new TreeMap<>();
+
+        for (Map.Entry<String, List<Event>> process : processes.entrySet())
+        {
+            Event begin = null;
+
+            for (Event event : process.getValue())
+            {
+                if (event.kind.equals("BEGIN"))
+                    begin = event;
+
+                if (!event.kind.equals("END") || begin == null || begin.round != event.round)
+                    continue;
+
+                int round = event.round;
+                int election = event.election;
+
+                durations.computeIfAbsent(round, key -> new Statistics()).add(event.time - begin.time);
+
+                List<Event> causes = process.getValue().stream()
+                        .filter(received -> received.kind.equals("VOTE") && !received.send && received.cause != null)
+                        .filter(received -> received.election == election && received.round == round)
+                        .map(received -> received.cause)
+                        .collect(Collectors.toList());
+
+                if (causes.isEmpty())
+                    continue;
+
+                long last = causes.stream().mapToLong(cause -> cause.time).max().getAsLong();
+
+                causes.forEach(cause -> slacks.computeIfAbsent(round, key -> new Statistics()).add(last - cause.time));
+                tails.computeIfAbsent(round, key -> new Statistics()).add(event.time - last);
+            }
+        }
+
+        report.append("\nROUNDS (ms)         duration mean/max    slack mean/max    after last send mean/max\n");
+
+        for (int round : durations.keySet())
+        {
+            Statistics duration = durations.get(round);
+            Statistics slack = slacks.getOrDefault(round, new Statistics());
+            Statistics tail = tails.getOrDefault(round, new Statistics());
+
+            report.append(String.format("  round %-4d %12.3f %9.3f %9.3f %9.3f %11.3f %9.3f\n", round, duration.mean() / 1e3, duration.max / 1e3,
+                    slack.mean() / 1e3, slack.max / 1e3, tail.mean() / 1e3, tail.max / 1e3));
+        }
+    }
+
+    // How late each participant sends its votes compared with the first participant to send to the same receiver in the same round,
+    // how often it is the last, and how long it spends on the elections' critical paths.
+    private void reportParticipants(StringBuilder report, Map<String, Long> criticalTime)
+    {
+        Map<String, Statistics> lateness = new TreeMap<>();
+        Map<String, Integer> last = new TreeMap<>();
+
+        for (List<Event> events : processes.values())
+        {
+            Map<String, List<Event>> byRound = events.stream()
+                    .filter(received -> received.kind.equals("VOTE") && !received.send && received.cause != null)
+                    .collect(Collectors.groupingBy(received -> received.election + " " + received.round));
+
+            for (List<Event> received : byRound.values())
+            {
+                long first = received.stream().mapToLong(event -> event.cause.time).min().getAsLong();
+                Event latest = received.stream().max(Comparator.comparingLong(event -> event.cause.time)).get();
+
+                received.forEach(event -> lateness.computeIfAbsent(event.cause.process, key -> new Statistics()).add(event.cause.time - first));
+                last.merge(latest.cause.process, 1, Integer::sum);
+            }
+        }
+
+        report.append("\nSLOWEST PARTICIPANTS                lateness mean/max (ms)  last to send  on critical path (ms)\n");
+
+        lateness.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Statistics> entry) -> entry.getValue().mean()).reversed())
+                .limit(top)
+                .forEach(entry -> report.append(String.format("  %-24s %14.3f %9.3f %13d %22.3f\n", entry.getKey(), entry.getValue().mean() / 1e3,
+                        entry.getValue().max / 1e3, last.getOrDefault(entry.getKey(), 0), criticalTime.getOrDefault(entry.getKey(), 0L) / 1e3)));
+    }
+
+    // From each send to its receive being logged, which includes any time the message waited to be read, by link.
+    public Map<String, List<Long>> getLatencies()
+    {
+        Map<String, List<Long>> latencies = new TreeMap<>();
+
+        for (List<Event> events : processes.values())
+        {
+            for (Event event : events)
+            {
+                if (!event.send && event.cause != null)
+                    latencies.computeIfAbsent(event.cause.process + " -> " + event.process, key -> new ArrayList<>()).add(event.latency());
+            }
+        }
+
+        return latencies;
+    }
+
+    public Set<String> getParticipants()
+    {
+        Set<String> participants = new TreeSet<>(processes.keySet());
+        participants.remove(COORDINATOR);
+
+        return participants;
+    }
+
+    private void reportLinks(StringBuilder report)
+    {
+        Map<String, Statistics> latencies = new TreeMap<>();
+
+        getLatencies().forEach((link, values) -> values.forEach(value -> latencies.computeIfAbsent(link, key -> new Statistics()).add(value)));
+
+        report.append("\nSLOWEST LINKS                                    messages  latency mean/max (ms)\n");
+
+        latencies.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Statistics> entry) -> entry.getValue().mean()).reversed())
+                .limit(top)
+                .forEach(entry -> report.append(String.format("  %-44s %6d %12.3f %9.3f\n", entry.getKey(), entry.getValue().count,
+                        entry.getValue().mean() / 1e3, entry.getValue().max / 1e3)));
+    }
+
+    private static class Event
+    {
+        private final String process;
+        private final long time;
+        private final long lamport;
+        private final String text;
+
+        private String kind = "";
+        private int sequence;
+        private boolean send = false;
+        private String peer;
+        private int election;
+        private int round;
+
+        private Event previous;
+        private Event cause;
+        private Event effect;
+
+        public Event(String process, long time, long lamport, String text)
+        {
+            this.process = process;
+            this.time = time;
+            this.lamport = lamport;
+            this.text = text;
+        }
+
+        // A send is only logged once it has been written, so a message read straight away can seem to arrive before it was sent.
+        public long latency()
+        {
+            return Math.max(0, time - cause.time);
+        }
+    }
+
+    private static class Statistics
+    {
+        private int count = 0;
+        private long total = 0;
+        private long max = 0;
+
+        public void add(long value)
+        {
+            count++;
+            total += value;
+            max = Math.max(max, value);
+        }
+
+        public double mean()
+        {
+            return count == 0 ? 0 : (double) total / count;
+        }
+    }
+}
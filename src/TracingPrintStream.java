@@ -0,0 +1,17 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// A PrintStream that stamps each line with this process's LamportClock when tracing, for the other end to take off as it reads.
+public class TracingPrintStream extends PrintStream
+{
+    public TracingPrintStream(OutputStream out)
+    {
+        super(out);
+    }
+
+    @Override
+    public synchronized void println(String message)
+    {
+        super.println(LamportClock.stamp(message));
+    }
+}
@@ -1,5 +1,7 @@
 import java.io.IOException;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 
 public class UDPLoggerClient
@@ -8,6 +10,7 @@ public class UDPLoggerClient
 	private final int processId;
 	private final int timeout;
 	private final DatagramSocket socket;
+	private final List<InetSocketAddress> endpoints;
 	private final ExecutorService logService = Executors.newSingleThreadExecutor();
 
 	/**
@@ -20,6 +23,7 @@ public class UDPLoggerClient
 		this.processId = processId;
 		this.timeout = timeout;
 		this.socket = initialise();
+		this.endpoints = parseEndpoints(Settings.getLoggerEndpoints());
 	}
 	
 	public int getLoggerServerPort() {
@@ -49,18 +53,12 @@ public class UDPLoggerClient
 			Runnable logMessage = () -> {
 				byte[] buffer = message.getBytes();
 
-				InetAddress address = null;
+				InetSocketAddress endpoint = getEndpoint(message);
 
-				try
-				{
-					address = InetAddress.getLocalHost();
-				}
-				catch (UnknownHostException e)
-				{
-					e.printStackTrace();
-				}
+				if (endpoint == null)
+					return;
 
-				DatagramPacket packet = new DatagramPacket(buffer, buffer.length, address, loggerServerPort);
+				DatagramPacket packet = new DatagramPacket(buffer, buffer.length, endpoint);
 
 				try
 				{
@@ -111,6 +109,65 @@ public class UDPLoggerClient
 		logService.execute(logToServer);
 	}
 
+	/**
+	 * Chooses the Logger process a message goes to. With several, every message from one process goes to the same one, so that the
+	 * records of each process stay in order in one Logger's segments.
+	 * 
+	 * @param message the log message, starting with the process it came from
+	 * @return the address of the Logger process, or null if the local host cannot be found
+	 */
+	private InetSocketAddress getEndpoint(String message)
+	{
+		if (!endpoints.isEmpty())
+		{
+			int end = message.indexOf(' ');
+			String process = end < 0 ? String.valueOf(processId) : message.substring(0, end);
+
+			return endpoints.get(Math.floorMod(process.hashCode(), endpoints.size()));
+		}
+
+		try
+		{
+			return new InetSocketAddress(InetAddress.getLocalHost(), loggerServerPort);
+		}
+		catch (UnknownHostException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @param endpoints a comma separated list of Logger processes, each a port on the local host or a host:port, or null for none
+	 * @return the addresses of the Logger processes
+	 */
+	private static List<InetSocketAddress> parseEndpoints(String endpoints)
+	{
+		List<InetSocketAddress> addresses = new ArrayList<>();
+
+		if (endpoints == null)
+			return addresses;
+
+		for (String endpoint : endpoints.split(","))
+		{
+			endpoint = endpoint.trim();
+
+			try
+			{
+				if (endpoint.contains(":"))
+					addresses.add(new InetSocketAddress(Address.host(endpoint), Address.port(endpoint)));
+				else if (!endpoint.isEmpty())
+					addresses.add(new InetSocketAddress(InetAddress.getLocalHost(), Integer.parseInt(endpoint)));
+			}
+			catch (UnknownHostException e)
+			{
+				e.printStackTrace();
+			}
+		}
+
+		return addresses;
+	}
+
 	public DatagramSocket initialise()
 	{
 		try
@@ -11,14 +11,25 @@ public class UDPLoggerServer
 {
     private final int portNumber;
     private final DatagramSocket socket;
-    private final byte[] buffer = new byte[256];
+    // Large enough for a record listing the votes of a few hundred participants, which a smaller buffer would cut short.
+    private final byte[] buffer = new byte[16384];
 
-    private final File logFile = new File("logger_server_" + System.currentTimeMillis() + ".log");
+    private final long startTime = System.currentTimeMillis();
+    private final int segmentRecords = Settings.getLoggerSegmentRecords();
+    private File logFile;
+    private final LogSubscribers subscribers;
 
     public UDPLoggerServer(int portNumber)
     {
         this.portNumber = portNumber;
+        this.logFile = getSegmentFile(0);
         this.socket = initialise();
+
+        int subscriberPort = Settings.getLoggerSubscriberPort();
+        this.subscribers = subscriberPort > 0 ? new LogSubscribers(Settings.getLoggerRingSize(), Settings.getLoggerSubscriberQueue()) : null;
+
+        if (subscribers != null)
+            subscribers.listen(subscriberPort);
     }
 
     public static void main(String[] args)
@@ -42,10 +53,22 @@ public class UDPLoggerServer
         }
     }
 
+    // With segments, each Logger process writes a stream of its own, named by its port so that several can share a directory. LogMerger
+    // puts them back together.
+    private File getSegmentFile(int segment)
+    {
+        if (segmentRecords <= 0)
+            return new File("logger_server_" + startTime + ".log");
+
+        return new File(String.format("logger_server_%d_%d_%06d.log", startTime, portNumber, segment));
+    }
+
     public void run()
     {
         DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
         PrintWriter writer;
+        int segment = 0;
+        int records = 0;
 
         try
         {
@@ -72,9 +95,22 @@ public class UDPLoggerServer
                     message.append(tokens.remove(0)).append(" ");
                 }
 
-                writer.println(id + " " + System.currentTimeMillis() + " " + message.toString().trim());
+                String record = id + " " + System.currentTimeMillis() + " " + message.toString().trim();
+
+                writer.println(record);
                 writer.flush();
 
+                if (subscribers != null)
+                    subscribers.publish(record);
+
+                if (segmentRecords > 0 && ++records >= segmentRecords)
+                {
+                    writer.close();
+                    logFile = getSegmentFile(++segment);
+                    writer = new PrintWriter(logFile);
+                    records = 0;
+                }
+
                 // Send back "ACK" to acknowledge the message has been received.
                 InetAddress address = packet.getAddress();
                 int senderPort = packet.getPort();
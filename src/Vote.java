@@ -1,16 +1,16 @@
 
 public class Vote {
 
-	private final int participantPort;
+	private final String participant;
 	private final String vote;
 	
-	public Vote(int participantPort, String vote) {
-		this.participantPort = participantPort;
+	public Vote(String participant, String vote) {
+		this.participant = participant;
 		this.vote = vote;
 	}
 
-	public int getParticipantPort() {
-		return participantPort;
+	public String getParticipant() {
+		return participant;
 	}
 
 	public String getVote() {
@@ -19,7 +19,7 @@ public class Vote {
 
 	@Override
 	public String toString() {
-		return "<" + participantPort + ", " + vote + ">";
+		return "<" + participant + ", " + vote + ">";
 	}
 	
 	
@@ -3,10 +3,11 @@ import java.util.List;
 
 public class VoteResponse
 {
-    private final int participant;
+    private final String participant;
     private final List<Vote> votes = new ArrayList<>();
+    private int round;
 
-    public VoteResponse(int participant)
+    public VoteResponse(String participant)
     {
         this.participant = participant;
     }
@@ -16,7 +17,17 @@ public class VoteResponse
         this.votes.addAll(votes);
     }
 
-    public int getParticipant()
+    public void setRound(int round)
+    {
+        this.round = round;
+    }
+
+    public int getRound()
+    {
+        return round;
+    }
+
+    public String getParticipant()
     {
         return participant;
     }
@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// A participant's record of the election it is taking part in, kept in a memory-mapped file so that appending is just a copy into the
+// page cache. Records are one line of text each, and are only forced to disk when sync() is called, once per round, rather than on
+// every append. Each election starts the log afresh, so on restart the log holds exactly the election that was interrupted.
+public class WriteAheadLog
+{
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private final List<String> records = new ArrayList<>();
+
+    public WriteAheadLog(Path path, int capacity) throws IOException
+    {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+
+        recover();
+    }
+
+    // Read back every complete record. The mapping starts out zeroed, so the log ends at the first zero byte, and a record that was
+    // only partly written when the participant died has no terminating newline and is dropped.
+    private void recover()
+    {
+        int start = 0;
+
+        for (int position = 0; position < buffer.limit() && buffer.get(position) != 0; position++)
+        {
+            if (buffer.get(position) == '\n')
+            {
+                byte[] record = new byte[position - start];
+
+                buffer.position(start);
+                buffer.get(record);
+
+                records.add(new String(record, StandardCharsets.UTF_8));
+                start = position + 1;
+            }
+        }
+
+        buffer.position(start);
+    }
+
+    public synchronized List<String> getRecords()
+    {
+        return new ArrayList<>(records);
+    }
+
+    public synchronized void append(String record)
+    {
+        byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+
+        if (buffer.remaining() < bytes.length + 1)
+            grow(bytes.length + 1);
+
+        buffer.put(bytes);
+        records.add(record);
+    }
+
+    public synchronized void sync()
+    {
+        buffer.force();
+    }
+
+    // Forget the previous election. The old records are zeroed so that they cannot be mistaken for the new election's after a restart.
+    public synchronized void reset()
+    {
+        int end = buffer.position();
+
+        for (int position = 0; position < end; position++)
+        {
+            buffer.put(position, (byte) 0);
+        }
+
+        buffer.position(0);
+        records.clear();
+    }
+
+    public synchronized void close()
+    {
+        try
+        {
+            buffer.force();
+            channel.close();
+        }
+        catch (IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    private void grow(int needed)
+    {
+        int position = buffer.position();
+
+        try
+        {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(2L * buffer.capacity(), buffer.capacity() + needed));
+            buffer.position(position);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("Could not extend the write-ahead log.", ex);
+        }
+    }
+}